@@ -1,5 +1,9 @@
+import util.AttendanceManager;
+
 public class Main {
     public static void main(String[] args) {
+        // Compressing last month's attendance can take a while, so it never runs on the event thread.
+        AttendanceManager.sealClosedMonthsInBackground();
         new LoginFrame();
     }
 }
\ No newline at end of file
@@ -1,39 +1,132 @@
 import face_recognition
 import cv2
+import numpy as np
 import pandas as pd
 from datetime import datetime
 import argparse
+import json
+import sys
 from pathlib import Path
 
 # --- Configuration ---
 BASE_DIR = Path(__file__).resolve().parent
 KNOWN_FACES_DIR = BASE_DIR / "known_faces"
-ATTENDANCE_CSV = BASE_DIR.parent.parent / "data" / "attendance.csv"
+# Encodings of known_faces/*.jpg, reused while an image's modification time is unchanged.
+ENCODING_CACHE = KNOWN_FACES_DIR / ".encodings.json"
+ENCODING_CACHE_VERSION = 1
+MATCH_TOLERANCE = 0.5
+ENCODING_SIZE = 128
+# One attendance log per month, e.g. data/attendance/2025-06.csv; older months are sealed by the application.
+ATTENDANCE_DIR = BASE_DIR.parent.parent / "data" / "attendance"
 
 # --- Argument Parsing ---
 parser = argparse.ArgumentParser(description="Facial Recognition Attendance System")
 parser.add_argument("--section", type=str, required=True, help="Section identifier (e.g., A, B)")
+parser.add_argument("--emit", action="store_true",
+                    help="Print MARK events to stdout for the application to record instead of writing the CSV")
+parser.add_argument("--detect-every", type=int, default=5,
+                    help="Run face detection on every Nth frame and track the faces in between (default 5)")
 args = parser.parse_args()
 CURRENT_SECTION = args.section
+EMIT = args.emit
+DETECT_EVERY = max(1, args.detect_every)
+
+def log(message):
+    """Status messages; on stderr when stdout carries events."""
+    print(message, file=sys.stderr if EMIT else sys.stdout, flush=True)
 
 # --- Function to load known faces ---
+def load_encoding_cache(cache_path):
+    """Returns {file name: (mtime_ns, encoding or None)} from the cache; {} if it is missing,
+    from another version or corrupt, so that every image is encoded again and the cache rewritten."""
+    if not cache_path.exists():
+        return {}
+    try:
+        with open(cache_path, encoding="utf-8") as cache_file:
+            cache = json.load(cache_file)
+        if cache.get("version") != ENCODING_CACHE_VERSION or cache.get("size") != ENCODING_SIZE:
+            raise ValueError("written by another version of this script")
+        entries = {}
+        for name, (mtime, encoding) in cache["entries"].items():
+            if encoding is not None and (len(encoding) != ENCODING_SIZE
+                                         or not all(isinstance(value, float) for value in encoding)):
+                raise ValueError(f"malformed encoding for {name}")
+            entries[name] = (int(mtime), encoding)
+        return entries
+    except (OSError, ValueError, KeyError, TypeError, AttributeError) as e:
+        log(f"Rebuilding encoding cache: {e}")
+        return {}
+
+def save_encoding_cache(cache_path, entries):
+    cache = {"version": ENCODING_CACHE_VERSION, "size": ENCODING_SIZE,
+             "entries": {name: [mtime, encoding] for name, (mtime, encoding) in sorted(entries.items())}}
+    # Written aside and renamed so an interrupted save never leaves a truncated cache.
+    temp_path = cache_path.with_name(cache_path.name + ".tmp")
+    with open(temp_path, "w", encoding="utf-8") as cache_file:
+        json.dump(cache, cache_file)
+    temp_path.replace(cache_path)
+
+def encode_image(file_path):
+    """The first face's encoding as a list of floats, or None when the image has no face."""
+    encodings = face_recognition.face_encodings(face_recognition.load_image_file(file_path))
+    return [float(value) for value in encodings[0]] if encodings else None
+
+def refresh_encodings(directory, cache_path, encode):
+    """Returns ({file name: (mtime_ns, encoding or None)} for directory/*.jpg, number encoded),
+    calling encode only for images that are new or changed since the cache was written."""
+    cached = load_encoding_cache(cache_path)
+    entries = {}
+    encoded = 0
+    for file_path in sorted(directory.glob("*.jpg")):
+        mtime = file_path.stat().st_mtime_ns
+        entry = cached.get(file_path.name)
+        if entry is None or entry[0] != mtime:
+            # Images without a face are remembered too, so they are not decoded again next time.
+            entry = (mtime, encode(file_path))
+            encoded += 1
+        entries[file_path.name] = entry
+
+    if encoded or entries.keys() != cached.keys():
+        try:
+            save_encoding_cache(cache_path, entries)
+        except OSError as e:
+            log(f"Could not save encoding cache: {e}")
+    return entries, encoded
+
 def load_known_faces(directory):
-    """Loads face encodings and names from a directory."""
-    known_encodings = []
-    known_names = []
-    print(f"Loading known faces from {directory}...")
+    """Returns an (n, 128) encoding matrix and the n matching names; only new or changed images are encoded."""
+    log(f"Loading known faces from {directory}...")
     if not directory.exists():
-        print(f"Error: Known faces directory not found at {directory}")
-        return known_encodings, known_names
-        
-    for file_path in directory.glob("*.jpg"):
-        image = face_recognition.load_image_file(file_path)
-        encodings = face_recognition.face_encodings(image)
-        if encodings:
-            known_encodings.append(encodings[0])
-            known_names.append(file_path.stem)
-    print(f"Loaded {len(known_names)} known faces.")
-    return known_encodings, known_names
+        log(f"Error: Known faces directory not found at {directory}")
+        return np.empty((0, ENCODING_SIZE)), []
+
+    entries, encoded = refresh_encodings(directory, ENCODING_CACHE, encode_image)
+    found = [name for name in sorted(entries) if entries[name][1] is not None]
+    names = [Path(name).stem for name in found]
+    matrix = np.array([entries[name][1] for name in found], dtype=float).reshape(-1, ENCODING_SIZE)
+    log(f"Loaded {len(names)} known faces ({encoded} newly encoded).")
+    return matrix, names
+
+def match_faces(known_encodings, known_names, face_encodings):
+    """Nearest known face for each encoding in one distance computation; "Unknown" beyond the tolerance."""
+    if len(face_encodings) == 0:
+        return []
+    distances = np.linalg.norm(known_encodings[np.newaxis, :, :] - np.asarray(face_encodings)[:, np.newaxis, :], axis=2)
+    nearest = distances.argmin(axis=1)
+    return [known_names[index] if distances[row, index] <= MATCH_TOLERANCE else "Unknown"
+            for row, index in enumerate(nearest)]
+
+def create_tracker():
+    """An OpenCV single-object tracker, or None when this OpenCV build has none."""
+    for factory in ("TrackerKCF_create", "TrackerCSRT_create", "TrackerMIL_create"):
+        for module in (cv2, getattr(cv2, "legacy", None)):
+            if module is not None and hasattr(module, factory):
+                return getattr(module, factory)()
+    return None
+
+def attendance_partition(timestamp):
+    """The month's attendance log that a mark made at timestamp belongs in."""
+    return ATTENDANCE_DIR / f"{timestamp:%Y-%m}.csv"
 
 # --- Function to get the last time each student was marked ---
 def get_last_attendance_times(filepath):
@@ -54,30 +147,43 @@ def get_last_attendance_times(filepath):
 
 # --- Function to mark attendance ---
 def mark_attendance(name, section):
-    """Appends a new attendance record and returns the timestamp."""
+    """Records an attendance mark and returns the timestamp."""
     timestamp = datetime.now()
-    new_record = pd.DataFrame([[name, timestamp.strftime("%Y-%m-%d %H:%M:%S"), section]], 
-                              columns=["Username", "Timestamp", "Section"])
-    
-    new_record.to_csv(ATTENDANCE_CSV, mode='a', header=not ATTENDANCE_CSV.exists(), index=False)
-    print(f"Marked: {name} at {timestamp.strftime('%H:%M:%S')} for Section {section}")
+    formatted = timestamp.strftime("%Y-%m-%d %H:%M:%S")
+    if EMIT:
+        # One line per mark; the application dedupes and appends them in batches.
+        print(f"MARK,{name},{formatted},{section}", flush=True)
+    else:
+        # Takes no lock, unlike the application's writer; the application only ever seals months
+        # before the current one, so it never rewrites the file appended to here.
+        new_record = pd.DataFrame([[name, formatted, section]],
+                                  columns=["Username", "Timestamp", "Section"])
+        partition = attendance_partition(timestamp)
+        partition.parent.mkdir(parents=True, exist_ok=True)
+        new_record.to_csv(partition, mode='a', header=not partition.exists(), index=False)
+    log(f"Marked: {name} at {timestamp.strftime('%H:%M:%S')} for Section {section}")
     return timestamp
 
 # --- Main Application Logic ---
 def main():
     known_encodings, known_names = load_known_faces(KNOWN_FACES_DIR)
-    if not known_encodings:
-        print("No known faces loaded. Exiting.")
+    if not known_names:
+        log("No known faces loaded. Exiting.")
         return
         
     video_capture = cv2.VideoCapture(0)
     if not video_capture.isOpened():
-        print("Error: Could not open video stream.")
+        log("Error: Could not open video stream.")
         return
 
-    last_marked_times = get_last_attendance_times(ATTENDANCE_CSV)
+    # Only the current hour matters for duplicates, so the current month's log is all that is read.
+    last_marked_times = get_last_attendance_times(attendance_partition(datetime.now()))
     
-    print(f"Starting facial recognition for Section {CURRENT_SECTION}. Press 'q' to quit.")
+    log(f"Starting facial recognition for Section {CURRENT_SECTION}. Press 'q' to quit.")
+
+    # Faces from the last detection, as (tracker or None, name, (left, top, width, height)) in full-frame pixels.
+    tracked_faces = []
+    frame_index = 0
 
     while True:
         ret, frame = video_capture.read()
@@ -93,44 +199,63 @@ def main():
         if now.minute > 50:
             status_text = "Marking Window: CLOSED"
             status_color = (0, 0, 255) # Red for closed
+            tracked_faces = []
+            frame_index = 0
         else:
             status_text = f"Marking Window: OPEN (until {now.hour}:50)"
             
-            small_frame = cv2.resize(frame, (0, 0), fx=0.25, fy=0.25)
-            rgb_small_frame = cv2.cvtColor(small_frame, cv2.COLOR_BGR2RGB)
-
-            face_locations = face_recognition.face_locations(rgb_small_frame)
-            face_encodings = face_recognition.face_encodings(rgb_small_frame, face_locations)
-
-            for face_encoding, face_location in zip(face_encodings, face_locations):
-                matches = face_recognition.compare_faces(known_encodings, face_encoding, tolerance=0.5)
-                name = "Unknown"
-
-                if True in matches:
-                    first_match_index = matches.index(True)
-                    name = known_names[first_match_index]
-
-                    # 2. Check if the student has already been marked for this hour
-                    can_mark = False
-                    last_marked_time = last_marked_times.get(name)
-                    
-                    if not last_marked_time:
-                        can_mark = True # Never marked before
-                    else:
-                        # Check if the last mark was in a different hour on a different day OR a different hour on the same day
-                        is_same_day = last_marked_time.date() == now.date()
-                        is_same_hour = last_marked_time.hour == now.hour
-                        if not (is_same_day and is_same_hour):
-                            can_mark = True
-
-                    if can_mark:
-                        new_timestamp = mark_attendance(name, CURRENT_SECTION)
-                        last_marked_times[name] = new_timestamp
-                
-                # Display face rectangle and name
-                top, right, bottom, left = [v * 4 for v in face_location]
-                cv2.rectangle(frame, (left, top), (right, bottom), (0, 255, 0), 2)
-                cv2.putText(frame, name, (left + 6, bottom - 6), cv2.FONT_HERSHEY_DUPLEX, 0.8, (255, 255, 255), 1)
+
+            if frame_index % DETECT_EVERY == 0:
+                small_frame = cv2.resize(frame, (0, 0), fx=0.25, fy=0.25)
+                rgb_small_frame = cv2.cvtColor(small_frame, cv2.COLOR_BGR2RGB)
+
+                face_locations = face_recognition.face_locations(rgb_small_frame)
+                face_encodings = face_recognition.face_encodings(rgb_small_frame, face_locations)
+                names = match_faces(known_encodings, known_names, face_encodings)
+
+                tracked_faces = []
+                for name, face_location in zip(names, face_locations):
+                    if name != "Unknown":
+                        # 2. Check if the student has already been marked for this hour
+                        can_mark = False
+                        last_marked_time = last_marked_times.get(name)
+
+                        if not last_marked_time:
+                            can_mark = True # Never marked before
+                        else:
+                            # Check if the last mark was in a different hour on a different day OR a different hour on the same day
+                            is_same_day = last_marked_time.date() == now.date()
+                            is_same_hour = last_marked_time.hour == now.hour
+                            if not (is_same_day and is_same_hour):
+                                can_mark = True
+
+                        if can_mark:
+                            new_timestamp = mark_attendance(name, CURRENT_SECTION)
+                            last_marked_times[name] = new_timestamp
+
+                    top, right, bottom, left = [v * 4 for v in face_location]
+                    box = (left, top, right - left, bottom - top)
+                    tracker = create_tracker()
+                    if tracker is not None:
+                        tracker.init(frame, box)
+                    tracked_faces.append((tracker, name, box))
+            else:
+                # Between detections the trackers move the boxes; a lost face waits for the next detection.
+                updated_faces = []
+                for tracker, name, box in tracked_faces:
+                    if tracker is not None:
+                        ok, new_box = tracker.update(frame)
+                        if not ok:
+                            continue
+                        box = tuple(int(v) for v in new_box)
+                    updated_faces.append((tracker, name, box))
+                tracked_faces = updated_faces
+            frame_index += 1
+
+            # Display face rectangle and name
+            for _, name, (left, top, width, height) in tracked_faces:
+                cv2.rectangle(frame, (left, top), (left + width, top + height), (0, 255, 0), 2)
+                cv2.putText(frame, name, (left + 6, top + height - 6), cv2.FONT_HERSHEY_DUPLEX, 0.8, (255, 255, 255), 1)
 
         # Display the overall status on the top-left of the frame
         cv2.putText(frame, status_text, (10, 30), cv2.FONT_HERSHEY_SIMPLEX, 0.7, status_color, 2)
@@ -141,7 +266,7 @@ def main():
 
     video_capture.release()
     cv2.destroyAllWindows()
-    print("Attendance session ended.")
+    log("Attendance session ended.")
 
 if __name__ == "__main__":
     main()
\ No newline at end of file
@@ -6,7 +6,6 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
-import java.util.ArrayList;
 
 public class LoginFrame extends JFrame {
     private JTextField loginIdField;
@@ -95,24 +94,16 @@ public class LoginFrame extends JFrame {
     }
 
     private User findUser(String loginInput, String password) throws IOException {
-        // MODIFIED: Changed List to ArrayList to match studied concepts.
-        ArrayList<User> users = CSVManager.loadUsers("data/users.csv");
-        for (User user : users) {
-            boolean idMatch = false;
+        // Students log in with their registration number, staff with their username. Reading stops at the first match.
+        return CSVManager.findFirstUser("data/users.csv", user -> {
             String role = user.getRole();
+            boolean idMatch = false;
             if ("student".equalsIgnoreCase(role)) {
-                if (user.getRegNo().equalsIgnoreCase(loginInput)) {
-                    idMatch = true;
-                }
+                idMatch = user.getRegNo().equalsIgnoreCase(loginInput);
             } else if ("teacher".equalsIgnoreCase(role) || "admin".equalsIgnoreCase(role)) {
-                if (user.getUsername().equalsIgnoreCase(loginInput)) {
-                    idMatch = true;
-                }
+                idMatch = user.getUsername().equalsIgnoreCase(loginInput);
             }
-            if (idMatch && user.getPassword().equals(password)) {
-                return user;
-            }
-        }
-        return null;
+            return idMatch && user.getPassword().equals(password);
+        });
     }
 }
\ No newline at end of file
@@ -1,7 +1,11 @@
+import model.Assessment;
 import model.Mark;
 import model.MarkUpdate;
 import model.User;
 import util.CSVManager;
+import util.ConfigManager;
+import util.DataCache;
+import util.MarksRepository;
 
 import javax.swing.*;
 import java.awt.*;
@@ -9,13 +13,15 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 public class MarksEntryFrame extends JFrame {
     private static final int STUDENTS_PER_PAGE = 10;
     private final ArrayList<User> enrolledStudents = new ArrayList<>();
-    private ArrayList<Mark> existingMarksList = new ArrayList<>();
     
     private final ArrayList<MarkUpdate> allEditedMarks = new ArrayList<>();
+    // The marks as they were when the frame opened; only cells that differ are saved.
+    private final HashMap<String, Integer> loadedScores = new HashMap<>();
     private ArrayList<User> usersOnCurrentPage = new ArrayList<>();
     private ArrayList<JTextField> fieldsOnCurrentPage = new ArrayList<>();
 
@@ -107,23 +113,16 @@ public class MarksEntryFrame extends JFrame {
 
     private void loadData() {
         try {
-            ArrayList<User> allUsers = CSVManager.loadUsers("data/users.csv");
-            existingMarksList = CSVManager.loadMarks("data/marks.csv");
-            
-            ArrayList<String> studentUsernamesForSubject = new ArrayList<>();
-            for (Mark mark : existingMarksList) {
-                if (mark.getSubject().equalsIgnoreCase(subjectCode)) {
-                    if (!studentUsernamesForSubject.contains(mark.getUsername())) {
-                        studentUsernamesForSubject.add(mark.getUsername());
-                    }
-                }
-            }
+            MarksRepository existingMarks = DataCache.getSubjectMarks("data/marks.csv", subjectCode);
 
+            Assessment assessment = Assessment.fromKey(marksType);
             enrolledStudents.clear();
-            for (User user : allUsers) {
-                if (studentUsernamesForSubject.contains(user.getUsername())) {
-                    enrolledStudents.add(user);
-                }
+            loadedScores.clear();
+            // Only the subject's students are kept while the users file is read.
+            for (User user : CSVManager.findUsers("data/users.csv", u -> existingMarks.isEnrolled(subjectCode, u.getUsername()))) {
+                enrolledStudents.add(user);
+                Mark existingMark = existingMarks.find(subjectCode, user.getUsername());
+                loadedScores.put(user.getUsername(), assessment != null ? existingMark.getScore(assessment) : 0);
             }
             
             displayCurrentPage();
@@ -165,25 +164,8 @@ public class MarksEntryFrame extends JFrame {
                 return String.valueOf(editedMark.getMark());
             }
         }
-        for (Mark existingMark : existingMarksList) {
-            if (existingMark.getUsername().equals(username) && existingMark.getSubject().equalsIgnoreCase(subjectCode)) {
-                // MODIFIED: Use switch with individual getters instead of array access.
-                String typeLower = marksType.toLowerCase();
-                switch(typeLower) {
-                    case "quiz1": return String.valueOf(existingMark.getQuiz1());
-                    case "quiz2": return String.valueOf(existingMark.getQuiz2());
-                    case "quiz3": return String.valueOf(existingMark.getQuiz3());
-                    case "quiz4": return String.valueOf(existingMark.getQuiz4());
-                    case "assignment1": return String.valueOf(existingMark.getAssignment1());
-                    case "assignment2": return String.valueOf(existingMark.getAssignment2());
-                    case "assignment3": return String.valueOf(existingMark.getAssignment3());
-                    case "assignment4": return String.valueOf(existingMark.getAssignment4());
-                    case "mid": return String.valueOf(existingMark.getMid());
-                    case "final": return String.valueOf(existingMark.getFinalExam());
-                }
-            }
-        }
-        return "0";
+        Integer loadedScore = loadedScores.get(username);
+        return loadedScore != null ? String.valueOf(loadedScore) : "0";
     }
 
     private void commitEditsFromCurrentPage() {
@@ -213,26 +195,13 @@ public class MarksEntryFrame extends JFrame {
             return;
         }
 
-        int maxMark;
-        String markTypeName;
-        String typeLower = marksType.toLowerCase();
-
-        if (typeLower.startsWith("quiz")) {
-            maxMark = 10;
-            markTypeName = "Quiz";
-        } else if (typeLower.startsWith("assignment")) {
-            maxMark = 10;
-            markTypeName = "Assignment";
-        } else if (typeLower.equals("mid")) {
-            maxMark = 20;
-            markTypeName = "Mid Term";
-        } else if (typeLower.equals("final")) {
-            maxMark = 40;
-            markTypeName = "Final Exam";
-        } else {
+        Assessment assessment = Assessment.fromKey(marksType);
+        if (assessment == null) {
             JOptionPane.showMessageDialog(this, "Unknown mark type.", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
+        int maxMark = ConfigManager.getConfig().getMaxMarks(assessment);
+        String markTypeName = assessment.getLabel();
 
         for (MarkUpdate mu : allEditedMarks) {
             try {
@@ -252,8 +221,21 @@ public class MarksEntryFrame extends JFrame {
             }
         }
 
+        // Unchanged cells are left out, so a colleague saving other students of this subject at the same time isn't overwritten.
+        ArrayList<MarkUpdate> changedMarks = new ArrayList<>();
+        for (MarkUpdate mu : allEditedMarks) {
+            Integer loadedScore = loadedScores.get(mu.getUsername());
+            if (loadedScore == null || loadedScore != mu.getMark()) {
+                changedMarks.add(mu);
+            }
+        }
+        if (changedMarks.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No marks were entered or changed.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
         try {
-            CSVManager.batchUpdateMarks("data/marks.csv", this.subjectCode, marksType, allEditedMarks);
+            CSVManager.batchUpdateMarks("data/marks.csv", this.subjectCode, marksType, changedMarks);
             JOptionPane.showMessageDialog(this, "Marks saved successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
             dispose();
         } catch (IOException e) {
@@ -1,9 +1,17 @@
+import model.Assessment;
 import model.Mark;
 import model.Subject;
 import util.AttendanceManager;
-import util.CSVManager;
+import util.ClassStatistics;
+import util.DataCache;
 import util.ConfigManager;
 import util.GradeCalculator;
+import util.GradeScale;
+import util.GradingPolicy;
+import util.MarksRepository;
+import util.ScoreRankIndex;
+import util.WeightedScorer;
+import util.WhatIfSolver;
 
 import javax.swing.*;
 import javax.swing.event.ListSelectionEvent;
@@ -14,22 +22,19 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Map;
 
 public class StudentDashboard extends JFrame {
 
     private final String username;
-    private ArrayList<Mark> allMarks;
     private final JPanel detailPanel;
-    private String gradingPolicy;
-
-    public static final double QUIZ_WEIGHT = 0.20;
-    public static final double ASSIGNMENT_WEIGHT = 0.20;
-    public static final double MID_WEIGHT = 0.20;
-    public static final double FINAL_WEIGHT = 0.40;
+    private final WhatIfSolver whatIfSolver = new WhatIfSolver();
+    private final ConfigManager.ConfigListener configListener;
+    private Subject selectedSubject;
 
     public StudentDashboard(String username) {
         this.username = username;
-        this.allMarks = new ArrayList<>();
 
         setTitle("Student Dashboard - " + username);
         setSize(900, 700);
@@ -37,9 +42,6 @@ public class StudentDashboard extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLayout(new BorderLayout(10, 10));
 
-        loadAllMarks();
-        this.gradingPolicy = ConfigManager.loadGradingPolicy();
-
         detailPanel = createDetailPanel();
         JScrollPane subjectListPanel = createSubjectListPanel();
 
@@ -50,14 +52,28 @@ public class StudentDashboard extends JFrame {
         add(splitPane, BorderLayout.CENTER);
         add(createFooterPanel(), BorderLayout.SOUTH);
 
+        // A teacher changing the policy or weights regrades the open subject.
+        configListener = config -> SwingUtilities.invokeLater(() -> {
+            if (selectedSubject != null) updateDetailPanelContent(selectedSubject);
+        });
+        ConfigManager.addListener(configListener);
+
         setVisible(true);
     }
 
-    private void loadAllMarks() {
+    @Override
+    public void dispose() {
+        ConfigManager.removeListener(configListener);
+        super.dispose();
+    }
+
+    // Only the selected subject's shard is read.
+    private MarksRepository loadSubjectMarks(String subjectCode) {
         try {
-            this.allMarks = CSVManager.loadMarks("data/marks.csv");
+            return DataCache.getSubjectMarks("data/marks.csv", subjectCode);
         } catch (IOException e) {
             JOptionPane.showMessageDialog(this, "Could not load marks data: " + e.getMessage(), "Data Error", JOptionPane.ERROR_MESSAGE);
+            return new MarksRepository();
         }
     }
 
@@ -72,7 +88,7 @@ public class StudentDashboard extends JFrame {
     private JScrollPane createSubjectListPanel() {
         final DefaultListModel<Subject> subjectListModel = new DefaultListModel<>();
         try {
-            ArrayList<Subject> subjects = CSVManager.loadSubjects("data/subjects.csv");
+            ArrayList<Subject> subjects = DataCache.getSubjects("data/subjects.csv");
             for (Subject s : subjects) {
                 subjectListModel.addElement(s);
             }
@@ -109,30 +125,23 @@ public class StudentDashboard extends JFrame {
     }
 
     private void updateDetailPanelContent(Subject selectedSubject) {
+        this.selectedSubject = selectedSubject;
         detailPanel.removeAll();
         detailPanel.setLayout(new BoxLayout(detailPanel, BoxLayout.Y_AXIS));
 
         String subjectCode = selectedSubject.getCode();
 
-        Mark studentMark = null;
-        for (Mark mark : allMarks) {
-            if (mark.getSubject().equalsIgnoreCase(subjectCode) && mark.getUsername().equalsIgnoreCase(this.username)) {
-                studentMark = mark;
-                break;
-            }
-        }
+        MarksRepository subjectMarks = loadSubjectMarks(subjectCode);
+        Mark studentMark = subjectMarks.find(subjectCode, this.username);
 
-        ArrayList<Double> allWeightedScores = new ArrayList<>();
-        if ("relative".equals(gradingPolicy)) {
-            for (Mark mark : allMarks) {
-                if (mark.getSubject().equalsIgnoreCase(subjectCode)) {
-                    allWeightedScores.add(calculateWeightedScore(mark));
-                }
-            }
-        }
+        GradingPolicy gradingPolicy = ConfigManager.getGradingPolicy(subjectCode);
+        // Maintained by the cached repository, so reselecting a subject doesn't rescan the class.
+        ClassStatistics classStatistics = gradingPolicy.usesClassStatistics() ? subjectMarks.getStatistics(subjectCode) : null;
 
-        detailPanel.add(createMarksDisplayPanel(studentMark, selectedSubject, allWeightedScores));
-        detailPanel.add(createGradeCalculatorPanel(studentMark));
+        ScoreRankIndex rankIndex = studentMark != null ? subjectMarks.getRankIndex(subjectCode) : null;
+
+        detailPanel.add(createMarksDisplayPanel(studentMark, selectedSubject, gradingPolicy, classStatistics, rankIndex));
+        detailPanel.add(createGradeCalculatorPanel(studentMark, gradingPolicy.scaleFor(classStatistics)));
         detailPanel.add(createAttendanceDisplayPanel(selectedSubject));
 
         detailPanel.revalidate();
@@ -140,33 +149,18 @@ public class StudentDashboard extends JFrame {
     }
 
     private double calculateWeightedScore(Mark mark) {
-        if (mark == null) return 0.0;
-        
-        double quizScore = ((double) mark.getTotalQuizScore() / 40.0) * QUIZ_WEIGHT;
-        double assignmentScore = ((double) mark.getTotalAssignmentScore() / 40.0) * ASSIGNMENT_WEIGHT;
-        double midScore = ((double) mark.getMid() / 20.0) * MID_WEIGHT;
-        double finalScore = ((double) mark.getFinalExam() / 40.0) * FINAL_WEIGHT;
-
-        return (quizScore + assignmentScore + midScore + finalScore) * 100;
+        return WeightedScorer.score(mark);
     }
     
-    private JPanel createMarksDisplayPanel(Mark mark, Subject subject, ArrayList<Double> allWeightedScores) {
+    private JPanel createMarksDisplayPanel(Mark mark, Subject subject, GradingPolicy gradingPolicy, ClassStatistics classStatistics, ScoreRankIndex rankIndex) {
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new BoxLayout(mainPanel, BoxLayout.Y_AXIS));
         mainPanel.setBorder(BorderFactory.createTitledBorder("Marks for " + subject.getName()));
 
         if (mark != null) {
             double weightedScore = calculateWeightedScore(mark);
-            String finalGrade;
-            String gradePolicyLabel;
-
-            if ("relative".equals(this.gradingPolicy)) {
-                finalGrade = GradeCalculator.calculateRelative(weightedScore, allWeightedScores);
-                gradePolicyLabel = "Final Grade (Relative):";
-            } else {
-                finalGrade = GradeCalculator.calculateAbsolute(weightedScore);
-                gradePolicyLabel = "Final Grade (Absolute):";
-            }
+            String finalGrade = GradeCalculator.calculate(gradingPolicy, weightedScore, classStatistics);
+            String gradePolicyLabel = "Final Grade (" + gradingPolicy.getLabel() + "):";
             
             mainPanel.add(createLabelValuePairRow("Quiz 1:", String.valueOf(mark.getQuiz1()), false));
             mainPanel.add(createLabelValuePairRow("Quiz 2:", String.valueOf(mark.getQuiz2()), false));
@@ -186,6 +180,8 @@ public class StudentDashboard extends JFrame {
             
             mainPanel.add(createLabelValuePairRow("Weighted Score:", String.format("%.2f / 100", weightedScore), true));
             mainPanel.add(createLabelValuePairRow(gradePolicyLabel, finalGrade, true));
+            mainPanel.add(createLabelValuePairRow("Class Rank:", rankIndex.rank(weightedScore) + " of " + rankIndex.getCount(), false));
+            mainPanel.add(createLabelValuePairRow("Percentile:", String.format("%.1f", rankIndex.percentile(weightedScore)), false));
 
         } else {
             mainPanel.setLayout(new BorderLayout());
@@ -211,49 +207,12 @@ public class StudentDashboard extends JFrame {
         JPanel panel = new JPanel(new BorderLayout(5, 5));
         panel.setBorder(BorderFactory.createTitledBorder("Attendance Log for " + selectedSubject.getCode()));
 
-        ArrayList<String[]> allRecords = AttendanceManager.getAttendanceRecords();
+        // Each class hour counts once, however often the recognizer logged the student during it.
+        int[] attendedHours = AttendanceManager.getAttendedClassHours(username, selectedSubject.getCode());
         ArrayList<Object[]> subjectSpecificData = new ArrayList<>();
-        
-        // MODIFIED: Changed from uniqueDates to uniqueDateHours to track attendance per hour.
-        ArrayList<String> uniqueDateHours = new ArrayList<>();
         int serialNumber = 1;
-
-        for (String[] row : allRecords) {
-            boolean usernameMatch = row.length >= 1 && row[0].trim().equalsIgnoreCase(username.trim());
-            boolean subjectMatch = row.length >= 3 && row[2].trim().equalsIgnoreCase(selectedSubject.getCode().trim());
-
-            if (usernameMatch && subjectMatch) {
-                String timestamp = row[1];
-                
-                // --- Manual logic to get date and hour ---
-                StringBuilder dateBuilder = new StringBuilder();
-                StringBuilder hourBuilder = new StringBuilder();
-                boolean spaceFound = false;
-                for (int i = 0; i < timestamp.length(); i++) {
-                    char c = timestamp.charAt(i);
-                    if (c == ' ') {
-                        spaceFound = true;
-                        continue; // Skip the space itself
-                    }
-                    if (!spaceFound) {
-                        dateBuilder.append(c);
-                    } else {
-                        // Append the two characters for the hour
-                        if (hourBuilder.length() < 2) {
-                            hourBuilder.append(c);
-                        }
-                    }
-                }
-                String date = dateBuilder.toString();
-                String hour = hourBuilder.toString();
-                String dateHourKey = date + "-" + hour; // e.g., "2025-06-16-10"
-
-                // MODIFIED: Check against the unique date-hour key.
-                if (!uniqueDateHours.contains(dateHourKey)) {
-                    uniqueDateHours.add(dateHourKey);
-                    subjectSpecificData.add(new Object[]{serialNumber++, date, "Present"});
-                }
-            }
+        for (int hour : attendedHours) {
+            subjectSpecificData.add(new Object[]{serialNumber++, AttendanceManager.formatDate(hour), AttendanceManager.formatHour(hour), "Present"});
         }
 
         JPanel summaryPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
@@ -263,7 +222,7 @@ public class StudentDashboard extends JFrame {
         if (subjectSpecificData.isEmpty()) {
             panel.add(new JLabel("No attendance records found for this subject.", SwingConstants.CENTER), BorderLayout.CENTER);
         } else {
-            String[] columnNames = {"Sr. No.", "Date", "Status"};
+            String[] columnNames = {"Sr. No.", "Date", "Hour", "Status"};
             DefaultTableModel tableModel = new DefaultTableModel(columnNames, 0) {
                 @Override public boolean isCellEditable(int row, int column) { return false; }
             };
@@ -278,7 +237,7 @@ public class StudentDashboard extends JFrame {
         return panel;
     }
     
-    private JPanel createGradeCalculatorPanel(final Mark studentMark) {
+    private JPanel createGradeCalculatorPanel(final Mark studentMark, final GradeScale gradeScale) {
         JPanel calcPanel = new JPanel(new GridLayout(0, 2, 10, 10));
         calcPanel.setBorder(BorderFactory.createTitledBorder("Grade Calculator"));
         calcPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, calcPanel.getPreferredSize().height * 3));
@@ -289,13 +248,7 @@ public class StudentDashboard extends JFrame {
             return calcPanel;
         }
 
-        ArrayList<String> pendingAssessments = new ArrayList<>();
-        if (studentMark.getMid() == 0) {
-            pendingAssessments.add("Mid Term");
-        } else if (studentMark.getFinalExam() == 0) {
-            pendingAssessments.add("Final Exam");
-        }
-
+        EnumSet<Assessment> pendingAssessments = WhatIfSolver.pendingAssessments(studentMark);
         if (pendingAssessments.isEmpty()) {
             calcPanel.setLayout(new BorderLayout());
             calcPanel.add(new JLabel("  All assessments have been graded."));
@@ -303,66 +256,62 @@ public class StudentDashboard extends JFrame {
         }
 
         final JTextField desiredGradeField = new JTextField();
-        final JComboBox<String> targetAssessmentBox = new JComboBox<>(pendingAssessments.toArray(new String[0]));
-        final JButton calculateButton = new JButton("Calculate Required Score");
+        final JPanel pendingPanel = new JPanel(new GridLayout(0, 2));
+        final ArrayList<JCheckBox> pendingBoxes = new ArrayList<>();
+        for (Assessment assessment : pendingAssessments) {
+            JCheckBox box = new JCheckBox(assessment.getLabel(), true);
+            box.putClientProperty(Assessment.class, assessment);
+            pendingBoxes.add(box);
+            pendingPanel.add(box);
+        }
+        final JButton calculateButton = new JButton("Calculate Required Scores");
         final JLabel resultLabel = new JLabel("Result will be shown here.");
         resultLabel.setFont(resultLabel.getFont().deriveFont(Font.BOLD));
 
-        calcPanel.add(new JLabel("Desired Course Grade (%):"));
+        calcPanel.add(new JLabel("Desired Course Grade (letter or %):"));
         calcPanel.add(desiredGradeField);
-        calcPanel.add(new JLabel("To achieve this, I need this score on my:"));
-        calcPanel.add(targetAssessmentBox);
+        calcPanel.add(new JLabel("Still to be graded:"));
+        calcPanel.add(pendingPanel);
         calcPanel.add(calculateButton);
         calcPanel.add(resultLabel);
 
         calculateButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
+                double targetScore;
                 try {
-                    double desiredGrade = Double.parseDouble(desiredGradeField.getText());
-
-                    if (desiredGrade < 0 || desiredGrade > 100) {
-                        JOptionPane.showMessageDialog(calcPanel, "Desired grade must be between 0 and 100.", "Input Error", JOptionPane.ERROR_MESSAGE);
-                        return;
-                    }
-
-                    double quizC = ((double) studentMark.getTotalQuizScore() / 40.0) * QUIZ_WEIGHT * 100;
-                    double assignC = ((double) studentMark.getTotalAssignmentScore() / 40.0) * ASSIGNMENT_WEIGHT * 100;
-                    double midC_forMax = (studentMark.getMid() == 0) ? (100 * MID_WEIGHT) : (((double) studentMark.getMid() / 20.0) * MID_WEIGHT * 100);
-                    double finalC_forMax = (studentMark.getFinalExam() == 0) ? (100 * FINAL_WEIGHT) : (((double) studentMark.getFinalExam() / 40.0) * FINAL_WEIGHT * 100);
-                    double maxAchievableGrade = quizC + assignC + midC_forMax + finalC_forMax;
-
-                    if (desiredGrade > maxAchievableGrade) {
-                        JOptionPane.showMessageDialog(calcPanel,
-                                String.format("The maximum grade you can achieve is %.2f%%. Please enter a lower target.", maxAchievableGrade),
-                                "Target Unachievable", JOptionPane.WARNING_MESSAGE);
-                        return;
-                    }
+                    targetScore = WhatIfSolver.parseTarget(desiredGradeField.getText(), gradeScale);
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(calcPanel, ex.getMessage(), "Input Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                EnumSet<Assessment> pending = EnumSet.noneOf(Assessment.class);
+                for (JCheckBox box : pendingBoxes) {
+                    if (box.isSelected()) pending.add((Assessment) box.getClientProperty(Assessment.class));
+                }
+                if (pending.isEmpty()) {
+                    JOptionPane.showMessageDialog(calcPanel, "Select at least one assessment that is still to be graded.", "Input Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
 
-                    String targetAssessment = (String) targetAssessmentBox.getSelectedItem();
-                    double currentWeightedSum = 0.0;
-                    double targetWeight = 0.0;
-                    int maxMarksForTarget = 0;
-
-                    if ("Final Exam".equals(targetAssessment)) {
-                        targetWeight = FINAL_WEIGHT;
-                        maxMarksForTarget = 40;
-                        currentWeightedSum = (quizC + assignC + (((double) studentMark.getMid() / 20.0) * MID_WEIGHT * 100));
-                    } else if ("Mid Term".equals(targetAssessment)) {
-                        targetWeight = MID_WEIGHT;
-                        maxMarksForTarget = 20;
-                        currentWeightedSum = (quizC + assignC); 
+                WhatIfSolver.Result result = whatIfSolver.solve(studentMark, pending, targetScore);
+                String maxAchievable = String.format("Maximum achievable: %.2f%% (%s)", result.getMaxScore(), gradeScale.grade(result.getMaxScore()));
+                if (!result.isFeasible()) {
+                    resultLabel.setText("<html>Target unachievable.<br>" + maxAchievable + "</html>");
+                } else if (result.isSecured()) {
+                    resultLabel.setText("<html>Already reached, whatever the remaining scores.<br>" + maxAchievable + "</html>");
+                } else {
+                    StringBuilder text = new StringBuilder("<html>");
+                    text.append(String.format("You need at least %d%% on each selected assessment.", result.getUniformPercent()));
+                    if (pending.size() > 1) {
+                        text.append("<br>With full marks on the others, the least you need is:");
                     }
-
-                    if (targetWeight > 0) {
-                        double requiredPercentage = (desiredGrade - currentWeightedSum) / targetWeight;
-                        double rawMarksNeeded = (requiredPercentage / 100.0) * maxMarksForTarget;
-                        
-                        resultLabel.setText(String.format("You need at least %.2f / %d on the %s.", rawMarksNeeded, maxMarksForTarget, targetAssessment));
+                    for (Map.Entry<Assessment, Integer> minimum : result.getMinimumMarks().entrySet()) {
+                        text.append("<br>").append(minimum.getKey().getLabel()).append(": ")
+                            .append(minimum.getValue()).append(" / ").append(ConfigManager.getConfig().getMaxMarks(minimum.getKey()));
                     }
-
-                } catch (NumberFormatException ex) {
-                    JOptionPane.showMessageDialog(calcPanel, "Please enter a valid number for your desired grade.", "Input Error", JOptionPane.ERROR_MESSAGE);
+                    text.append("<br>").append(maxAchievable).append("</html>");
+                    resultLabel.setText(text.toString());
                 }
             }
         });
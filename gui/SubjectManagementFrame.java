@@ -1,12 +1,15 @@
+import model.EnrollmentResult;
 import model.Subject;
 import model.User;
 import util.CSVManager;
+import util.DataCache;
 
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
 import java.awt.*;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 
 public class SubjectManagementFrame extends JFrame {
     private class SubjectTableModel extends AbstractTableModel {
@@ -46,7 +49,7 @@ public class SubjectManagementFrame extends JFrame {
 
         ArrayList<Subject> subjectList;
         try {
-            subjectList = CSVManager.loadSubjects(subjectsFilePath);
+            subjectList = DataCache.getSubjects(subjectsFilePath);
         } catch (IOException e) {
             subjectList = new ArrayList<>();
             JOptionPane.showMessageDialog(this, "Failed to load subjects: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
@@ -60,10 +63,12 @@ public class SubjectManagementFrame extends JFrame {
         JButton editButton = new JButton("Edit Subject");
         JButton deleteButton = new JButton("Delete Subject");
         JButton enrollButton = new JButton("Enroll Students");
+        JButton rosterButton = new JButton("Enroll from Roster");
         buttonPanel.add(addButton);
         buttonPanel.add(editButton);
         buttonPanel.add(deleteButton);
         buttonPanel.add(enrollButton);
+        buttonPanel.add(rosterButton);
 
         add(new JScrollPane(subjectTable), BorderLayout.CENTER);
         add(buttonPanel, BorderLayout.SOUTH);
@@ -72,6 +77,7 @@ public class SubjectManagementFrame extends JFrame {
         editButton.addActionListener(e -> editSubject());
         deleteButton.addActionListener(e -> deleteSubject());
         enrollButton.addActionListener(e -> enrollStudents());
+        rosterButton.addActionListener(e -> enrollFromRoster());
         
         setVisible(true);
     }
@@ -146,9 +152,8 @@ public class SubjectManagementFrame extends JFrame {
         if (selectedRow >= 0) {
             Subject selectedSubject = tableModel.getSubjectAt(selectedRow);
             try {
-                ArrayList<User> allUsers = CSVManager.loadUsers(usersFilePath);
                 ArrayList<User> students = new ArrayList<>();
-                for (User u : allUsers) {
+                for (User u : DataCache.getUsers(usersFilePath)) {
                     if ("student".equals(u.getRole())) {
                         students.add(u);
                     }
@@ -180,8 +185,15 @@ public class SubjectManagementFrame extends JFrame {
                         selectedUsernames.add(u.getUsername());
                     }
                     
-                    CSVManager.enrollStudents(marksFilePath, selectedSubject.getCode(), selectedUsernames);
-                    JOptionPane.showMessageDialog(this, "Enrolled " + selectedStudents.size() + " student(s).", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    EnrollmentResult enrollment = CSVManager.enrollStudents(marksFilePath,
+                            Collections.singletonMap(selectedSubject.getCode(), selectedUsernames)).get(0);
+                    String message = "Enrolled " + enrollment.getAdded() + " student(s), "
+                            + enrollment.getAlreadyEnrolled() + " already enrolled.";
+                    if (!enrollment.getCaseConflicts().isEmpty()) {
+                        message += "\nNot enrolled, username differs only in case from an enrolled student: "
+                                + String.join(", ", enrollment.getCaseConflicts());
+                    }
+                    JOptionPane.showMessageDialog(this, message, "Success", JOptionPane.INFORMATION_MESSAGE);
                 }
             } catch (IOException ex) {
                 JOptionPane.showMessageDialog(this, "Error during enrollment: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
@@ -191,11 +203,28 @@ public class SubjectManagementFrame extends JFrame {
         }
     }
 
+    // Roster CSV: header, then one SubjectCode,Username row per enrollment.
+    private void enrollFromRoster() {
+        JFileChooser chooser = new JFileChooser("data");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        try {
+            StringBuilder report = new StringBuilder();
+            for (EnrollmentResult result : CSVManager.enrollStudentsFromRoster(marksFilePath, chooser.getSelectedFile().getPath())) {
+                report.append(result).append("\n");
+            }
+            if (report.length() == 0) report.append("The roster has no enrollments.");
+            JTextArea reportArea = new JTextArea(report.toString(), 15, 40);
+            reportArea.setEditable(false);
+            JOptionPane.showMessageDialog(this, new JScrollPane(reportArea), "Roster Enrollment", JOptionPane.INFORMATION_MESSAGE);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Error during enrollment: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     private JComboBox<String> getTeacherComboBox() {
         try {
-            ArrayList<User> users = CSVManager.loadUsers(usersFilePath);
             ArrayList<String> teacherNames = new ArrayList<>();
-            for (User u : users) {
+            for (User u : DataCache.getUsers(usersFilePath)) {
                 if ("teacher".equals(u.getRole())) {
                     teacherNames.add(u.getUsername());
                 }
@@ -1,20 +1,35 @@
+import model.Assessment;
+import model.Mark;
 import model.Subject;
-import util.CSVManager;
+import util.AttendanceManager;
+import util.AttendanceRollup;
 import util.ConfigManager;
+import util.DataCache;
+import util.GradeScale;
+import util.GradingPolicy;
+import util.MarkDistributions;
+import util.MarksRepository;
+import util.ScoreDistribution;
+import util.WhatIfSolver;
 
 import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 
 public class TeacherDashboard extends JFrame {
     private final String teacherUsername;
     private JComboBox<Subject> classSelector;
     private JComboBox<String> gradingPolicySelector;
+    private JComboBox<String> policyScopeSelector;
     private JLabel marksManagementTitle;
+    private final WhatIfSolver whatIfSolver = new WhatIfSolver();
+    private final ConfigManager.ConfigListener configListener = config -> SwingUtilities.invokeLater(this::showCurrentGradingPolicy);
 
     public TeacherDashboard(String username) {
         this.teacherUsername = username;
@@ -29,9 +44,16 @@ public class TeacherDashboard extends JFrame {
         add(createFooterPanel(), BorderLayout.SOUTH);
 
         updateDynamicTitles();
+        ConfigManager.addListener(configListener);
         setVisible(true);
     }
 
+    @Override
+    public void dispose() {
+        ConfigManager.removeListener(configListener);
+        super.dispose();
+    }
+
     private JPanel createHeaderPanel() {
         JPanel panel = new JPanel(new FlowLayout(FlowLayout.CENTER));
         JLabel titleLabel = new JLabel("Teacher Dashboard");
@@ -58,7 +80,7 @@ public class TeacherDashboard extends JFrame {
         
         classSelector = new JComboBox<>();
         try {
-            ArrayList<Subject> allSubjects = CSVManager.loadSubjects("data/subjects.csv");
+            ArrayList<Subject> allSubjects = DataCache.getSubjects("data/subjects.csv");
             ArrayList<Subject> taughtSubjects = new ArrayList<>();
             for (Subject subject : allSubjects) {
                 if (teacherUsername.equalsIgnoreCase(subject.getTeacherUsername())) {
@@ -77,6 +99,7 @@ public class TeacherDashboard extends JFrame {
             @Override
             public void actionPerformed(ActionEvent e) {
                 updateDynamicTitles();
+                showCurrentGradingPolicy();
             }
         });
 
@@ -104,15 +127,11 @@ public class TeacherDashboard extends JFrame {
         JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         panel.setBorder(BorderFactory.createTitledBorder("Set Grading Policy"));
 
-        gradingPolicySelector = new JComboBox<>(new String[]{"Absolute Grading", "Relative Grading"});
+        gradingPolicySelector = new JComboBox<>(new String[]{"Absolute Grading", "Relative Grading", "Custom Scale"});
         gradingPolicySelector.setFont(new Font("Segoe UI", Font.PLAIN, 14));
-
-        String currentPolicy = ConfigManager.loadGradingPolicy();
-        if ("relative".equals(currentPolicy)) {
-            gradingPolicySelector.setSelectedItem("Relative Grading");
-        } else {
-            gradingPolicySelector.setSelectedItem("Absolute Grading");
-        }
+        policyScopeSelector = new JComboBox<>(new String[]{"All Classes", "Selected Class Only"});
+        policyScopeSelector.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        showCurrentGradingPolicy();
 
         JButton savePolicyButton = new JButton("Save Policy");
         savePolicyButton.setFont(new Font("Segoe UI", Font.PLAIN, 14));
@@ -126,18 +145,64 @@ public class TeacherDashboard extends JFrame {
 
         panel.add(new JLabel("Select Policy:"));
         panel.add(gradingPolicySelector);
+        panel.add(policyScopeSelector);
         panel.add(savePolicyButton);
         return panel;
     }
 
+    // Shows the policy in effect for the selected class, and whether it is the class's own.
+    private void showCurrentGradingPolicy() {
+        if (gradingPolicySelector == null) return;
+        String subjectCode = getSelectedSubjectIdentifier();
+        GradingPolicy currentPolicy = ConfigManager.getGradingPolicy(subjectCode.isEmpty() ? null : subjectCode);
+        if (currentPolicy == GradingPolicy.RELATIVE) {
+            gradingPolicySelector.setSelectedItem("Relative Grading");
+        } else if (currentPolicy == GradingPolicy.ABSOLUTE) {
+            gradingPolicySelector.setSelectedItem("Absolute Grading");
+        } else {
+            gradingPolicySelector.setSelectedItem("Custom Scale");
+        }
+        boolean ownPolicy = !subjectCode.isEmpty() && ConfigManager.hasSubjectGradingPolicy(subjectCode);
+        policyScopeSelector.setSelectedItem(ownPolicy ? "Selected Class Only" : "All Classes");
+    }
+
     private void saveGradingPolicy() {
         String selection = (String) gradingPolicySelector.getSelectedItem();
+        boolean selectedClassOnly = "Selected Class Only".equals(policyScopeSelector.getSelectedItem());
+        String subjectCode = getSelectedSubjectIdentifier();
+        if (selectedClassOnly && "".equals(subjectCode)) {
+            JOptionPane.showMessageDialog(this, "Please select a class first.", "No Class Selected", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
         String policyToSave = "absolute";
         if ("Relative Grading".equals(selection)) {
             policyToSave = "relative";
+        } else if ("Custom Scale".equals(selection)) {
+            GradingPolicy current = ConfigManager.getGradingPolicy(selectedClassOnly ? subjectCode : null);
+            String currentScale = current.getName().startsWith("custom:") ? current.getName().substring("custom:".length()) : "A=90,B=80,C=70,D=60";
+            String scale = (String) JOptionPane.showInputDialog(this,
+                "Enter the lowest score for each grade, e.g. A=90,B=80,C=70,D=60\n(scores below every minimum get an F):",
+                "Custom Scale", JOptionPane.PLAIN_MESSAGE, null, null, currentScale);
+            if (scale == null || scale.trim().isEmpty()) {
+                return;
+            }
+            policyToSave = "custom:" + scale.trim();
+        }
+
+        try {
+            GradingPolicy.parse(policyToSave);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Input Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (selectedClassOnly) {
+            ConfigManager.saveSubjectGradingPolicy(subjectCode, policyToSave);
+            JOptionPane.showMessageDialog(this, "Grading policy for " + subjectCode + " has been updated to: " + selection, "Policy Saved", JOptionPane.INFORMATION_MESSAGE);
+        } else {
+            ConfigManager.saveGradingPolicy(policyToSave);
+            JOptionPane.showMessageDialog(this, "Grading policy has been updated to: " + selection, "Policy Saved", JOptionPane.INFORMATION_MESSAGE);
         }
-        ConfigManager.saveGradingPolicy(policyToSave);
-        JOptionPane.showMessageDialog(this, "Grading policy has been updated to: " + selection, "Policy Saved", JOptionPane.INFORMATION_MESSAGE);
     }
 
     private JPanel createMarksPanel() {
@@ -146,11 +211,31 @@ public class TeacherDashboard extends JFrame {
         marksManagementTitle.setFont(new Font("Segoe UI", Font.BOLD, 16));
         marksManagementTitle.setBorder(BorderFactory.createEmptyBorder(0,0,5,0));
         
-        JPanel marksButtonsPanel = new JPanel(new GridLayout(2, 2, 10, 10));
+        JPanel marksButtonsPanel = new JPanel(new GridLayout(3, 2, 10, 10));
         marksButtonsPanel.add(createStyledButton("Quiz Marks", "quiz"));
         marksButtonsPanel.add(createStyledButton("Assignment Marks", "assignment"));
         marksButtonsPanel.add(createStyledButton("Mid Term Marks", "mid"));
         marksButtonsPanel.add(createStyledButton("Final Marks", "final"));
+
+        JButton canStillPassButton = new JButton("Who Can Still Pass");
+        canStillPassButton.setFont(new Font("Segoe UI", Font.PLAIN, 16));
+        canStillPassButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showWhoCanStillPass();
+            }
+        });
+        marksButtonsPanel.add(canStillPassButton);
+
+        JButton distributionButton = new JButton("Class Distribution");
+        distributionButton.setFont(new Font("Segoe UI", Font.PLAIN, 16));
+        distributionButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showClassDistribution();
+            }
+        });
+        marksButtonsPanel.add(distributionButton);
         
         marksOuterPanel.add(marksManagementTitle, BorderLayout.NORTH);
         marksOuterPanel.add(marksButtonsPanel, BorderLayout.CENTER);
@@ -162,6 +247,173 @@ public class TeacherDashboard extends JFrame {
         return titledMarksPanel;
     }
 
+    // Every student's outlook against the lowest passing grade, with the assessments nobody has been marked on as pending.
+    private void showWhoCanStillPass() {
+        String subjectCode = getSelectedSubjectIdentifier();
+        if ("".equals(subjectCode)) {
+            JOptionPane.showMessageDialog(this, "Please select a class first.", "No Class Selected", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        MarksRepository subjectMarks;
+        try {
+            subjectMarks = DataCache.getSubjectMarks("data/marks.csv", subjectCode);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Could not load marks data: " + e.getMessage(), "Data Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        ArrayList<Mark> classMarks = new ArrayList<>(subjectMarks.getMarksForSubject(subjectCode));
+        EnumSet<Assessment> pending = WhatIfSolver.pendingForClass(classMarks);
+        if (classMarks.isEmpty() || pending.isEmpty()) {
+            JOptionPane.showMessageDialog(this, classMarks.isEmpty() ? "No students are enrolled in " + subjectCode + "."
+                : "All assessments for " + subjectCode + " have been graded.", "Who Can Still Pass", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        GradingPolicy gradingPolicy = ConfigManager.getGradingPolicy(subjectCode);
+        GradeScale gradeScale = gradingPolicy.scaleFor(gradingPolicy.usesClassStatistics() ? subjectMarks.getStatistics(subjectCode) : null);
+        double passScore = gradeScale.getCutoff(0);
+
+        DefaultTableModel tableModel = new DefaultTableModel(new String[]{"Student", "Current", "Max Achievable", "Outlook"}, 0) {
+            @Override public boolean isCellEditable(int row, int column) { return false; }
+        };
+        int cannotPass = 0;
+        for (WhatIfSolver.Result result : whatIfSolver.solveClass(classMarks, pending, passScore)) {
+            String outlook;
+            if (result.isSecured()) {
+                outlook = "Passed";
+            } else if (result.isFeasible()) {
+                outlook = "Needs " + result.getUniformPercent() + "% on the rest";
+            } else {
+                outlook = "Cannot pass";
+                cannotPass++;
+            }
+            tableModel.addRow(new Object[]{result.getUsername(), String.format("%.2f", result.getCurrentScore()),
+                String.format("%.2f", result.getMaxScore()), outlook});
+        }
+
+        StringBuilder pendingNames = new StringBuilder();
+        for (Assessment assessment : pending) {
+            if (pendingNames.length() > 0) pendingNames.append(", ");
+            pendingNames.append(assessment.getLabel());
+        }
+        JPanel reportPanel = new JPanel(new BorderLayout(5, 5));
+        reportPanel.add(new JLabel(String.format("<html>Passing score: %.2f (%s). Still to be graded: %s.<br>%d of %d student(s) can no longer pass.</html>",
+            passScore, gradeScale.getGrade(0), pendingNames, cannotPass, classMarks.size())), BorderLayout.NORTH);
+        JTable reportTable = new JTable(tableModel);
+        reportTable.setAutoCreateRowSorter(true);
+        JScrollPane scrollPane = new JScrollPane(reportTable);
+        scrollPane.setPreferredSize(new Dimension(520, 300));
+        reportPanel.add(scrollPane, BorderLayout.CENTER);
+        JOptionPane.showMessageDialog(this, reportPanel, "Who Can Still Pass - " + subjectCode, JOptionPane.PLAIN_MESSAGE);
+    }
+
+    // One pass over the cached class marks, then switching columns only redraws.
+    private void showClassDistribution() {
+        final String subjectCode = getSelectedSubjectIdentifier();
+        if ("".equals(subjectCode)) {
+            JOptionPane.showMessageDialog(this, "Please select a class first.", "No Class Selected", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        MarksRepository subjectMarks;
+        try {
+            subjectMarks = DataCache.getSubjectMarks("data/marks.csv", subjectCode);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Could not load marks data: " + e.getMessage(), "Data Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        final MarkDistributions distributions = MarkDistributions.collect(new ArrayList<>(subjectMarks.getMarksForSubject(subjectCode)).stream());
+        if (distributions.getWeightedScores(subjectCode) == null) {
+            JOptionPane.showMessageDialog(this, "No marks have been recorded for " + subjectCode + ".", "Class Distribution", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        GradingPolicy gradingPolicy = ConfigManager.getGradingPolicy(subjectCode);
+        final double passScore = gradingPolicy.scaleFor(gradingPolicy.usesClassStatistics() ? subjectMarks.getStatistics(subjectCode) : null).getCutoff(0);
+
+        String[] columns = new String[Assessment.values().length + 1];
+        columns[0] = "Weighted Score";
+        for (Assessment assessment : Assessment.values()) {
+            columns[assessment.ordinal() + 1] = assessment.getLabel();
+        }
+        final JComboBox<String> columnSelector = new JComboBox<>(columns);
+        final JLabel summaryLabel = new JLabel();
+        final HistogramPanel histogramPanel = new HistogramPanel();
+
+        ActionListener showColumn = new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                int column = columnSelector.getSelectedIndex();
+                ScoreDistribution distribution;
+                double passThreshold;
+                if (column == 0) {
+                    distribution = distributions.getWeightedScores(subjectCode);
+                    passThreshold = passScore;
+                } else {
+                    Assessment assessment = Assessment.values()[column - 1];
+                    distribution = distributions.get(subjectCode, assessment);
+                    passThreshold = ConfigManager.getConfig().getMaxMarks(assessment) / 2.0;
+                }
+                summaryLabel.setText(String.format("<html>Students: %d &nbsp; Mean: %.2f &nbsp; Median: %.2f &nbsp; Min: %.2f &nbsp; Max: %.2f"
+                        + "<br>Pass rate (&ge; %.2f): %.1f%% &nbsp; Zero marks: %d</html>",
+                    distribution.getCount(), distribution.getMean(), distribution.getMedian(), distribution.getMin(), distribution.getMax(),
+                    passThreshold, distribution.passRate(passThreshold) * 100, distribution.getZeroCount()));
+                histogramPanel.show(distribution, column == 0 ? 20 : (int) distribution.getMaxValue() + 1);
+            }
+        };
+        columnSelector.addActionListener(showColumn);
+        showColumn.actionPerformed(null);
+
+        JPanel distributionPanel = new JPanel(new BorderLayout(5, 5));
+        JPanel topPanel = new JPanel(new BorderLayout(5, 5));
+        topPanel.add(columnSelector, BorderLayout.NORTH);
+        topPanel.add(summaryLabel, BorderLayout.CENTER);
+        distributionPanel.add(topPanel, BorderLayout.NORTH);
+        distributionPanel.add(histogramPanel, BorderLayout.CENTER);
+        JOptionPane.showMessageDialog(this, distributionPanel, "Class Distribution - " + subjectCode, JOptionPane.PLAIN_MESSAGE);
+    }
+
+    // Bar chart of a distribution; bucket i covers [i, i + 1) * maxValue / buckets.
+    private static class HistogramPanel extends JPanel {
+        private long[] counts = new long[0];
+        private double maxValue;
+
+        HistogramPanel() {
+            setPreferredSize(new Dimension(560, 260));
+            setBackground(Color.WHITE);
+        }
+
+        void show(ScoreDistribution distribution, int buckets) {
+            counts = distribution.histogram(buckets);
+            maxValue = distribution.getMaxValue();
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            if (counts.length == 0) return;
+            long highest = 1;
+            for (long count : counts) highest = Math.max(highest, count);
+
+            int left = 10, bottom = getHeight() - 20, top = 20;
+            double barWidth = (getWidth() - 2.0 * left) / counts.length;
+            FontMetrics metrics = g.getFontMetrics();
+            for (int i = 0; i < counts.length; i++) {
+                int x = left + (int) (i * barWidth);
+                int width = Math.max(1, (int) barWidth - 2);
+                int height = (int) ((bottom - top) * counts[i] / highest);
+                g.setColor(new Color(70, 130, 180));
+                g.fillRect(x, bottom - height, width, height);
+                g.setColor(Color.DARK_GRAY);
+                String label = String.valueOf(Math.round(i * maxValue / counts.length));
+                g.drawString(label, x + (width - metrics.stringWidth(label)) / 2, bottom + metrics.getAscent() + 2);
+                if (counts[i] > 0) {
+                    String count = String.valueOf(counts[i]);
+                    g.drawString(count, x + (width - metrics.stringWidth(count)) / 2, bottom - height - 3);
+                }
+            }
+        }
+    }
+
     private JPanel createAttendancePanel() {
         JPanel attendancePanel = new JPanel(new BorderLayout());
         attendancePanel.setBorder(BorderFactory.createTitledBorder("Attendance"));
@@ -174,10 +426,66 @@ public class TeacherDashboard extends JFrame {
                 startAttendanceScript();
             }
         });
-        attendancePanel.add(startAttendanceBtn, BorderLayout.CENTER);
+
+        JButton attendanceReportBtn = new JButton("Attendance Report");
+        attendanceReportBtn.setFont(new Font("Segoe UI", Font.PLAIN, 16));
+        attendanceReportBtn.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showAttendanceReport();
+            }
+        });
+
+        JPanel attendanceButtonsPanel = new JPanel(new GridLayout(2, 1, 10, 10));
+        attendanceButtonsPanel.add(startAttendanceBtn);
+        attendanceButtonsPanel.add(attendanceReportBtn);
+        attendancePanel.add(attendanceButtonsPanel, BorderLayout.CENTER);
         return attendancePanel;
     }
 
+    // Everyone's attended share of the class hours held, lowest first, flagging those under the minimum.
+    private void showAttendanceReport() {
+        String subjectCode = getSelectedSubjectIdentifier();
+        if ("".equals(subjectCode)) {
+            JOptionPane.showMessageDialog(this, "Please select a class first.", "No Class Selected", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        AttendanceRollup rollup = AttendanceManager.getSectionRollup(subjectCode);
+        if (rollup.getStudents().isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No students are enrolled in " + subjectCode + ".", "Attendance Report", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        ArrayList<AttendanceRollup.StudentAttendance> students = new ArrayList<>(rollup.getStudents());
+        students.sort((a, b) -> Double.compare(a.getPercentage(), b.getPercentage()));
+        DefaultTableModel tableModel = new DefaultTableModel(new String[]{"Student", "Hours Attended", "Attendance %", "Status"}, 0) {
+            @Override public boolean isCellEditable(int row, int column) { return false; }
+        };
+        int below = 0;
+        for (AttendanceRollup.StudentAttendance student : students) {
+            String status;
+            if (!student.isEnrolled()) {
+                status = "Not enrolled";
+            } else if (student.getPercentage() < AttendanceRollup.DEFAULT_THRESHOLD) {
+                status = "Below " + Math.round(AttendanceRollup.DEFAULT_THRESHOLD) + "%";
+                below++;
+            } else {
+                status = "OK";
+            }
+            tableModel.addRow(new Object[]{student.getUsername(), student.getAttendedHours() + " / " + rollup.getHeldHours(),
+                String.format("%.1f", student.getPercentage()), status});
+        }
+
+        JPanel reportPanel = new JPanel(new BorderLayout(5, 5));
+        reportPanel.add(new JLabel(String.format("<html>Class hours held: %d<br>%d student(s) below %d%% attendance.</html>",
+            rollup.getHeldHours(), below, Math.round(AttendanceRollup.DEFAULT_THRESHOLD))), BorderLayout.NORTH);
+        JTable reportTable = new JTable(tableModel);
+        JScrollPane scrollPane = new JScrollPane(reportTable);
+        scrollPane.setPreferredSize(new Dimension(520, 300));
+        reportPanel.add(scrollPane, BorderLayout.CENTER);
+        JOptionPane.showMessageDialog(this, reportPanel, "Attendance Report - " + subjectCode, JOptionPane.PLAIN_MESSAGE);
+    }
+
     private JPanel createFooterPanel() {
         JPanel southPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         JButton logoutButton = new JButton("Logout");
@@ -241,9 +549,11 @@ public class TeacherDashboard extends JFrame {
         }
         try {
             String scriptPath = new File("attendance/python/recognize_faces.py").getAbsolutePath();
-            ProcessBuilder pb = new ProcessBuilder("python", scriptPath, "--section", sectionIdentifier);
-            pb.inheritIO();
-            pb.start();
+            // The script reports marks on stdout and the application writes them, so there is one writer of the log.
+            ProcessBuilder pb = new ProcessBuilder("python", scriptPath, "--section", sectionIdentifier, "--emit");
+            pb.redirectInput(ProcessBuilder.Redirect.INHERIT);
+            pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+            AttendanceManager.ingest(pb.start());
             JOptionPane.showMessageDialog(this, "Starting attendance for Class " + sectionIdentifier + ".\nPress 'q' in the recognition window to quit.", "Attendance Started", JOptionPane.INFORMATION_MESSAGE);
         } catch (IOException ex) {
             JOptionPane.showMessageDialog(this,
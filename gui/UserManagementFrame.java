@@ -1,5 +1,6 @@
 import model.User;
 import util.CSVManager;
+import util.DataCache;
 
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
@@ -46,7 +47,7 @@ public class UserManagementFrame extends JFrame {
 
         ArrayList<User> userList;
         try {
-            userList = CSVManager.loadUsers(usersFilePath);
+            userList = DataCache.getUsers(usersFilePath);
         } catch (IOException e) {
             userList = new ArrayList<>();
             JOptionPane.showMessageDialog(this, "Failed to load users: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
@@ -0,0 +1,42 @@
+package model;
+
+public enum Assessment {
+    QUIZ1("quiz1", 10, "Quiz 1"),
+    QUIZ2("quiz2", 10, "Quiz 2"),
+    QUIZ3("quiz3", 10, "Quiz 3"),
+    QUIZ4("quiz4", 10, "Quiz 4"),
+    ASSIGNMENT1("assignment1", 10, "Assignment 1"),
+    ASSIGNMENT2("assignment2", 10, "Assignment 2"),
+    ASSIGNMENT3("assignment3", 10, "Assignment 3"),
+    ASSIGNMENT4("assignment4", 10, "Assignment 4"),
+    MID("mid", 20, "Mid Term"),
+    FINAL("final", 40, "Final Exam");
+
+    private final String key;
+    private final int maxMarks;
+    private final String label;
+
+    Assessment(String key, int maxMarks, String label) {
+        this.key = key;
+        this.maxMarks = maxMarks;
+        this.label = label;
+    }
+
+    // The type string used by the GUI and CSVManager, e.g. "quiz1" or "final".
+    public String getKey() { return key; }
+    // The built-in maximum; grading_policy.txt may override it, see ConfigManager.getConfig().
+    public int getMaxMarks() { return maxMarks; }
+    // How the dashboards name it, e.g. "Mid Term".
+    public String getLabel() { return label; }
+
+    public static Assessment fromKey(String type) {
+        if (type == null) return null;
+        String typeLower = type.trim().toLowerCase();
+        for (Assessment assessment : values()) {
+            if (assessment.key.equals(typeLower)) {
+                return assessment;
+            }
+        }
+        return null;
+    }
+}
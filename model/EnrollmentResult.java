@@ -0,0 +1,49 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class EnrollmentResult {
+    private final String subjectCode;
+    private final int added;
+    private final int alreadyEnrolled;
+    private final List<String> caseConflicts;
+
+    public EnrollmentResult(String subjectCode, int added, int alreadyEnrolled) {
+        this(subjectCode, added, alreadyEnrolled, new ArrayList<String>());
+    }
+
+    public EnrollmentResult(String subjectCode, int added, int alreadyEnrolled, ArrayList<String> caseConflicts) {
+        this.subjectCode = subjectCode;
+        this.added = added;
+        this.alreadyEnrolled = alreadyEnrolled;
+        this.caseConflicts = Collections.unmodifiableList(new ArrayList<>(caseConflicts));
+    }
+
+    public String getSubjectCode() {
+        return subjectCode;
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getAlreadyEnrolled() {
+        return alreadyEnrolled;
+    }
+
+    // Usernames rejected because they differ only in case from one already in the subject or earlier in the request.
+    public List<String> getCaseConflicts() {
+        return caseConflicts;
+    }
+
+    @Override
+    public String toString() {
+        String result = subjectCode + ": " + added + " added, " + alreadyEnrolled + " already enrolled";
+        if (!caseConflicts.isEmpty()) {
+            result += ", rejected as differing only in case: " + String.join(", ", caseConflicts);
+        }
+        return result;
+    }
+}
@@ -68,32 +68,62 @@ public class Mark {
     public void setAssignment3(int assignment3) { this.assignment3 = assignment3; }
     public void setAssignment4(int assignment4) { this.assignment4 = assignment4; }
 
+    public int getScore(Assessment assessment) {
+        switch (assessment) {
+            case QUIZ1: return getQuiz1();
+            case QUIZ2: return getQuiz2();
+            case QUIZ3: return getQuiz3();
+            case QUIZ4: return getQuiz4();
+            case ASSIGNMENT1: return getAssignment1();
+            case ASSIGNMENT2: return getAssignment2();
+            case ASSIGNMENT3: return getAssignment3();
+            case ASSIGNMENT4: return getAssignment4();
+            case MID: return getMid();
+            case FINAL: return getFinalExam();
+            default: return 0;
+        }
+    }
+
+    public void setScore(Assessment assessment, int mark) {
+        switch (assessment) {
+            case QUIZ1: setQuiz1(mark); break;
+            case QUIZ2: setQuiz2(mark); break;
+            case QUIZ3: setQuiz3(mark); break;
+            case QUIZ4: setQuiz4(mark); break;
+            case ASSIGNMENT1: setAssignment1(mark); break;
+            case ASSIGNMENT2: setAssignment2(mark); break;
+            case ASSIGNMENT3: setAssignment3(mark); break;
+            case ASSIGNMENT4: setAssignment4(mark); break;
+            case MID: setMid(mark); break;
+            case FINAL: setFinalExam(mark); break;
+        }
+    }
 
     // MODIFIED: Sums the individual quiz fields.
     public int getTotalQuizScore() {
-        return quiz1 + quiz2 + quiz3 + quiz4;
+        return getQuiz1() + getQuiz2() + getQuiz3() + getQuiz4();
     }
 
     // MODIFIED: Sums the individual assignment fields.
     public int getTotalAssignmentScore() {
-        return assignment1 + assignment2 + assignment3 + assignment4;
+        return getAssignment1() + getAssignment2() + getAssignment3() + getAssignment4();
     }
     
     // MODIFIED: Builds the CSV string from individual fields.
     public String toCsvString() {
         return String.join(",",
-            subject,
-            username,
-            String.valueOf(quiz1),
-            String.valueOf(quiz2),
-            String.valueOf(quiz3),
-            String.valueOf(quiz4),
-            String.valueOf(assignment1),
-            String.valueOf(assignment2),
-            String.valueOf(assignment3),
-            String.valueOf(assignment4),
-            String.valueOf(mid),
-            String.valueOf(finalExam)
+            getSubject(),
+            getUsername(),
+            String.valueOf(getQuiz1()),
+            String.valueOf(getQuiz2()),
+            String.valueOf(getQuiz3()),
+            String.valueOf(getQuiz4()),
+            String.valueOf(getAssignment1()),
+            String.valueOf(getAssignment2()),
+            String.valueOf(getAssignment3()),
+            String.valueOf(getAssignment4()),
+            String.valueOf(getMid()),
+            String.valueOf(getFinalExam())
         );
     }
 }
\ No newline at end of file
@@ -0,0 +1,217 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the attendance marks the face recognizer reports on its standard output, so the
+ * application is the only writer of the attendance log. A reader thread parses event lines
+ *
+ *   MARK,&lt;username&gt;,&lt;yyyy-MM-dd HH:mm:ss&gt;,&lt;section&gt;
+ *
+ * into a bounded queue (a full queue blocks the reader and, through the pipe, the recognizer)
+ * and echoes every other line. A writer thread drops marks for a class hour the student
+ * already has, then appends whatever has queued up to the month's partition (see
+ * AttendancePartitions) as one write and one sync, so a burst of faces costs one commit and
+ * lines never interleave. Each commit holds the attendance path's DataFileLock, which keeps it
+ * apart from migration and sealing; the recognizer in its plain mode, without --emit, writes
+ * the log directly and does not take that lock.
+ */
+public class AttendanceIngestor {
+
+    private static final String EVENT_PREFIX = "MARK,";
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int MAX_BATCH = 256;
+    // How long the writer waits for more marks before committing what it has.
+    private static final long LINGER_MILLIS = 200;
+    private static final String[] END = new String[0];
+
+    private final String attendancePath;
+    private final BlockingQueue<String[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final HashMap<String, HourBitmap> markedHours = new HashMap<>();
+    private final HashSet<String> seededMonths = new HashSet<>();
+    private Thread reader;
+    private Thread writer;
+    private volatile int written;
+    private volatile int duplicates;
+    private volatile IOException failure;
+
+    public AttendanceIngestor(String attendancePath) {
+        this.attendancePath = attendancePath;
+    }
+
+    /** Starts ingesting the process's standard output; returns at once. */
+    public synchronized void start(final Process process) {
+        if (reader != null) throw new IllegalStateException("Already started");
+        reader = new Thread(() -> read(process.getInputStream()), "attendance-reader");
+        writer = new Thread(this::write, "attendance-writer");
+        reader.setDaemon(true);
+        writer.setDaemon(true);
+        writer.start();
+        reader.start();
+    }
+
+    /** Waits until the process's output has ended and every mark from it is committed. */
+    public void awaitCompletion() throws InterruptedException, IOException {
+        Thread writerThread;
+        synchronized (this) {
+            writerThread = writer;
+        }
+        if (writerThread != null) writerThread.join();
+        if (failure != null) throw failure;
+    }
+
+    /** Marks appended to the log so far. */
+    public int getWrittenCount() { return written; }
+
+    /** Marks dropped because the student already had the class hour. */
+    public int getDuplicateCount() { return duplicates; }
+
+    /** "MARK,ali,2025-06-16 10:47:52,CS101" -> {ali, 2025-06-16 10:47:52, CS101}; null for any other line. */
+    static String[] parseEvent(String line) {
+        if (!line.startsWith(EVENT_PREFIX)) return null;
+        String[] fields = line.substring(EVENT_PREFIX.length()).split(",", -1);
+        if (fields.length != 3) return null;
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = fields[i].trim();
+            if (fields[i].isEmpty()) return null;
+        }
+        if (AttendanceManager.parseEpochHour(fields[1]) == AttendanceManager.INVALID_HOUR) return null;
+        return fields;
+    }
+
+    private void read(InputStream output) {
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(output, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                String[] event = parseEvent(line);
+                if (event != null) {
+                    queue.put(event);
+                } else if (line.startsWith(EVENT_PREFIX)) {
+                    System.err.println("Ignoring malformed attendance event: " + line);
+                } else {
+                    System.out.println(line);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Attendance output ended: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            putEnd();
+        }
+    }
+
+    private void putEnd() {
+        while (true) {
+            try {
+                queue.put(END);
+                return;
+            } catch (InterruptedException e) {
+                // The writer must still be told to finish, or awaitCompletion() would never return.
+            }
+        }
+    }
+
+    private void write() {
+        ArrayList<String[]> batch = new ArrayList<>();
+        boolean ended = false;
+        try {
+            while (!ended) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LINGER_MILLIS);
+                while (batch.size() < MAX_BATCH && batch.get(batch.size() - 1) != END) {
+                    long remaining = deadline - System.nanoTime();
+                    String[] event = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (event == null) break;
+                    batch.add(event);
+                }
+                ended = batch.get(batch.size() - 1) == END;
+                if (ended) batch.remove(batch.size() - 1);
+                commit(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failure = e;
+            System.err.println("Could not write attendance: " + e.getMessage());
+            // Keep the pipe drained so the recognizer is not blocked on a full queue.
+            while (!ended) {
+                try {
+                    ended = queue.take() == END;
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // Appends the batch's new class hours to their months' partitions, one write and sync per partition.
+    @SuppressWarnings("try")
+    private void commit(ArrayList<String[]> batch) throws IOException {
+        try (DataFileLock lock = DataFileLock.acquire(attendancePath)) {
+            AttendancePartitions.migrateIfNeeded(attendancePath);
+            TreeMap<String, StringBuilder> rowsByPartition = new TreeMap<>();
+            int added = 0;
+            for (String[] event : batch) {
+                int epochHour = AttendanceManager.parseEpochHour(event[1]);
+                if (!markHour(event[0], event[2], epochHour)) {
+                    duplicates++;
+                    continue;
+                }
+                String partitionPath = AttendancePartitions.partitionFileFor(attendancePath, epochHour).getPath();
+                StringBuilder rows = rowsByPartition.get(partitionPath);
+                if (rows == null) {
+                    rows = new StringBuilder();
+                    rowsByPartition.put(partitionPath, rows);
+                }
+                rows.append(event[0]).append(',').append(event[1]).append(',').append(event[2]).append('\n');
+                added++;
+            }
+
+            for (Map.Entry<String, StringBuilder> partition : rowsByPartition.entrySet()) {
+                File file = new File(partition.getKey());
+                boolean needsHeader = file.length() == 0;
+                try (FileOutputStream out = new FileOutputStream(file, true)) {
+                    out.write(((needsHeader ? AttendancePartitions.HEADER + "\n" : "") + partition.getValue()).getBytes(StandardCharsets.UTF_8));
+                    out.getFD().sync();
+                }
+                DataCache.invalidate(file.getPath());
+            }
+            written += added;
+        }
+    }
+
+    // False when the student already has the hour, in the month's partitions or earlier in this session.
+    private boolean markHour(String username, String section, int epochHour) throws IOException {
+        String key = AttendanceStore.key(username, section);
+        HourBitmap hours = markedHours.get(key);
+        if (hours == null) {
+            hours = new HourBitmap();
+            markedHours.put(key, hours);
+        }
+        String month = AttendancePartitions.monthOf(epochHour);
+        if (seededMonths.add(key + "," + month)) {
+            for (AttendancePartitions.Partition partition : AttendancePartitions.partitions(attendancePath)) {
+                if (!month.equals(partition.getMonth())) continue;
+                hours.orInPlace(DataCache.getAttendanceStore(partition.getFile().getPath()).getAttendedBitmap(username, section));
+            }
+        }
+        return hours.add(epochHour);
+    }
+}
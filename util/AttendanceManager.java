@@ -1,25 +1,285 @@
 package util;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import model.Mark;
+
+import java.io.File;
 import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Predicate;
 
 public class AttendanceManager {
 
     private static final String ATTENDANCE_FILE = "data/attendance.csv";
+    private static final String MARKS_FILE = "data/marks.csv";
+
+    private static boolean sealStarted;
+
+    /** parseEpochHour() result for a timestamp that is not "yyyy-MM-dd HH..." */
+    public static final int INVALID_HOUR = Integer.MIN_VALUE;
 
     public static ArrayList<String[]> getAttendanceRecords() {
+        return getAttendanceRecords(row -> true);
+    }
+
+    // Served from DataCache, which only parses rows appended since the last call.
+    public static ArrayList<String[]> getAttendanceRecords(Predicate<String[]> filter) {
         ArrayList<String[]> records = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(ATTENDANCE_FILE))) {
-            String line;
-            br.readLine(); 
-            while ((line = br.readLine()) != null) {
-                records.add(line.split(","));
+        try {
+            for (AttendanceStore store : getStores(null, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+                store.getAllRecords().stream().filter(filter).forEach(records::add);
             }
         } catch (IOException e) {
-            System.err.println("Could not read attendance file: " + e.getMessage());
+            System.err.println("Could not read attendance files: " + e.getMessage());
         }
         return records;
     }
+
+    /** One student's rows for one section, from the index rather than a scan of the log. */
+    public static ArrayList<String[]> getStudentAttendance(String username, String section) {
+        ArrayList<String[]> records = new ArrayList<>();
+        try {
+            for (AttendanceStore store : getStores(section, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+                records.addAll(store.getRecords(username, section));
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read attendance files: " + e.getMessage());
+        }
+        return records;
+    }
+
+    public static ArrayList<String[]> getSectionAttendance(String section) {
+        ArrayList<String[]> records = new ArrayList<>();
+        try {
+            for (AttendanceStore store : getStores(section, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+                records.addAll(store.getSectionRecords(section));
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read attendance files: " + e.getMessage());
+        }
+        return records;
+    }
+
+    /** The distinct class hours (see parseEpochHour) the student attended in the section, ascending. */
+    public static int[] getAttendedClassHours(String username, String section) {
+        return getAttendanceBitmap(username, section).toArray();
+    }
+
+    /** As above, limited to the days from and to (inclusive); only the months in between are read. */
+    public static int[] getAttendedClassHours(String username, String section, LocalDate from, LocalDate to) {
+        int fromHour = firstHourOf(from);
+        int toHour = lastHourOf(to);
+        HourBitmap hours = new HourBitmap();
+        for (AttendanceStore store : getStores(section, fromHour, toHour)) {
+            for (int hour : store.getAttendedHours(username, section)) {
+                if (hour >= fromHour && hour <= toHour) hours.add(hour);
+            }
+        }
+        return hours.toArray();
+    }
+
+    /** Number of class hours the student attended in the section from one day to another, inclusive. */
+    public static int countAttendedClassHours(String username, String section, LocalDate from, LocalDate to) {
+        int fromHour = firstHourOf(from);
+        int toHour = lastHourOf(to);
+        int count = 0;
+        for (AttendanceStore store : getStores(section, fromHour, toHour)) {
+            count += store.getAttendedBitmap(username, section).rangeCardinality(fromHour, toHour);
+        }
+        return count;
+    }
+
+    /** Every class hour the student attended in the section, as a bitmap for set operations. */
+    public static HourBitmap getAttendanceBitmap(String username, String section) {
+        HourBitmap hours = new HourBitmap();
+        for (AttendanceStore store : getStores(section, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+            hours.orInPlace(store.getAttendedBitmap(username, section));
+        }
+        return hours;
+    }
+
+    /** Every hour in which anyone was recorded in the section, i.e. the class hours held. */
+    public static HourBitmap getClassHoursHeld(String section) {
+        HourBitmap hours = new HourBitmap();
+        for (AttendanceStore store : getStores(section, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+            hours.orInPlace(store.getSectionBitmap(section));
+        }
+        return hours;
+    }
+
+    /** Class hours held in the section that the student was not recorded in. */
+    public static HourBitmap getMissedClassHours(String username, String section) {
+        return getClassHoursHeld(section).andNot(getAttendanceBitmap(username, section));
+    }
+
+    /** The most class hours of the section the student missed in a row. */
+    public static int getLongestAbsenceStreak(String username, String section) {
+        HourBitmap held = getClassHoursHeld(section);
+        return held.andNot(getAttendanceBitmap(username, section)).longestRunIn(held);
+    }
+
+    /** Usernames recorded in the section during the epoch hour; only that hour's month is read. */
+    public static ArrayList<String> getPresentAt(String section, int epochHour) {
+        ArrayList<String> present = new ArrayList<>();
+        for (AttendanceStore store : getStores(section, epochHour, epochHour)) {
+            for (String username : store.getPresentAt(section, epochHour)) {
+                if (!present.contains(username)) present.add(username);
+            }
+        }
+        return present;
+    }
+
+    private static int firstHourOf(LocalDate day) {
+        return (int) (day.toEpochDay() * 24);
+    }
+
+    private static int lastHourOf(LocalDate day) {
+        return (int) (day.toEpochDay() * 24 + 23);
+    }
+
+    /** Commits the marks a recognizer started with --emit prints, see AttendanceIngestor. */
+    public static AttendanceIngestor ingest(Process recognizer) {
+        AttendanceIngestor ingestor = new AttendanceIngestor(ATTENDANCE_FILE);
+        ingestor.start(recognizer);
+        return ingestor;
+    }
+
+    /**
+     * Held versus attended class hours for everyone in the section. Enrollment comes from the
+     * section's marks, so enrolled students who never showed up are listed at zero.
+     */
+    public static AttendanceRollup getSectionRollup(String section) {
+        ArrayList<String> enrolled = new ArrayList<>();
+        try {
+            for (Mark mark : DataCache.getSubjectMarks(MARKS_FILE, section).getMarksForSubject(section)) {
+                enrolled.add(mark.getUsername());
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read enrollment from marks: " + e.getMessage());
+        }
+        HourBitmap held = new HourBitmap();
+        HashMap<String, HourBitmap> attended = new HashMap<>();
+        HashMap<String, String> names = new HashMap<>();
+        for (AttendanceStore store : getStores(section, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+            store.collectSectionHours(section, held, attended, names);
+        }
+        return AttendanceRollup.of(section, held, attended, names, enrolled);
+    }
+
+    /**
+     * Hours since 1970-01-01 00:00 on the recorder's wall clock, e.g. "2025-06-16 10:47:52" and
+     * "2025-06-16 10:02:11" give the same hour. Time zones and daylight saving are deliberately
+     * ignored: the recognizer writes local time and a class hour is a wall-clock hour.
+     */
+    public static int parseEpochHour(String timestamp) {
+        String t = timestamp.trim();
+        if (t.length() < 13 || t.charAt(4) != '-' || t.charAt(7) != '-' || (t.charAt(10) != ' ' && t.charAt(10) != 'T')) {
+            return INVALID_HOUR;
+        }
+        int year = digits(t, 0, 4);
+        int month = digits(t, 5, 2);
+        int day = digits(t, 8, 2);
+        int hour = digits(t, 11, 2);
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || hour > 23) return INVALID_HOUR;
+        try {
+            return (int) (LocalDate.of(year, month, day).toEpochDay() * 24 + hour);
+        } catch (DateTimeException e) {
+            return INVALID_HOUR;
+        }
+    }
+
+    /** "2025-06-16" for an epoch hour. */
+    public static String formatDate(int epochHour) {
+        return LocalDate.ofEpochDay(Math.floorDiv(epochHour, 24)).toString();
+    }
+
+    /** "10:00" for an epoch hour. */
+    public static String formatHour(int epochHour) {
+        int hour = Math.floorMod(epochHour, 24);
+        return (hour < 10 ? "0" : "") + hour + ":00";
+    }
+
+    // The non-negative number in t[start, start + length), or -1 if any of it is not a digit.
+    private static int digits(String t, int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            char c = t.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * The stores of the partitions that can hold rows of the section (any when null) between the
+     * two epoch hours; undated rows are only included for an unbounded range. Listed and
+     * refreshed under the shared lock, so a seal swapping files in is never seen half done.
+     */
+    @SuppressWarnings("try")
+    private static ArrayList<AttendanceStore> getStores(String section, int fromHour, int toHour) {
+        ArrayList<AttendanceStore> stores = new ArrayList<>();
+        try {
+            AttendancePartitions.migrateIfNeeded(ATTENDANCE_FILE);
+            try (DataFileLock lock = DataFileLock.acquireShared(ATTENDANCE_FILE)) {
+                boolean unbounded = fromHour == Integer.MIN_VALUE && toHour == Integer.MAX_VALUE;
+                for (AttendancePartitions.Partition partition : AttendancePartitions.partitions(ATTENDANCE_FILE)) {
+                    if (section != null && !partition.mayContainSection(section)) continue;
+                    if (!unbounded && !partition.mayContainHours(fromHour, toHour)) continue;
+                    stores.add(DataCache.getAttendanceStore(partition.getFile().getPath()));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read attendance files: " + e.getMessage());
+        }
+        return stores;
+    }
+
+    /** Seals closed attendance months on a background thread, once per process; called at startup. */
+    public static synchronized void sealClosedMonthsInBackground() {
+        if (sealStarted) return;
+        sealStarted = true;
+        Thread sealer = new Thread(() -> {
+            try {
+                int sealed = AttendancePartitions.seal(ATTENDANCE_FILE, true);
+                if (sealed > 0) System.out.println("Sealed " + sealed + " closed attendance month(s).");
+            } catch (IOException e) {
+                System.err.println("Could not seal attendance months: " + e.getMessage());
+            }
+        }, "attendance-sealer");
+        sealer.setDaemon(true);
+        sealer.start();
+    }
+
+    /**
+     * Appends the rows that start at fromOffset (0 reads from the header) and returns the offset
+     * to resume from. A last line without a newline may still be being written and is left for the next call.
+     */
+    static long readAttendanceRecords(File file, long fromOffset, ArrayList<String[]> into) throws IOException {
+        long offset = fromOffset;
+        try (ChunkedCSVReader reader = new ChunkedCSVReader(file, fromOffset, new ChunkedCSVReader.Dictionary())) {
+            if (offset == 0) {
+                if (!reader.skipLine() || !reader.isLineTerminated()) return 0;
+                offset = reader.getOffset();
+            }
+            while (reader.next() && reader.isLineTerminated()) {
+                String[] row = parseRow(reader);
+                if (row != null) into.add(row);
+                offset = reader.getOffset();
+            }
+        }
+        return offset;
+    }
+
+    private static String[] parseRow(ChunkedCSVReader reader) {
+        int fieldCount = reader.getFieldCount();
+        if (fieldCount == 0) return null;
+        String[] row = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            // Username and Section repeat on every row, the timestamp never does.
+            row[i] = i == 1 ? reader.getString(i) : reader.getInternedString(i);
+        }
+        return row;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,444 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Maps the attendance path the rest of the code passes around (data/attendance.csv) onto one
+ * log per month (data/attendance/2025-06.csv), named after the month of each row's timestamp.
+ * Rows whose timestamp cannot be read go to undated.csv.
+ *
+ * Months before the current one are sealed: their files are merged into one, optionally
+ * gzip-compressed (2025-06.csv.gz, with its students' hour bitmaps in 2025-06.hours), and
+ * described in manifest.csv by row count, byte size and the sections they hold. A query for
+ * a date range or section then opens only the partitions that can contain it. A file whose
+ * size no longer matches its manifest line was written to after sealing and is treated as
+ * open again until the next seal.
+ *
+ * The first access migrates a monolithic attendance.csv into partitions and renames it to
+ * attendance.csv.migrated.
+ *
+ * Migration, AttendanceIngestor's appends and the file swap at the end of a seal hold the
+ * DataFileLock of the attendance path (data/attendance.lock) exclusively; listing partitions
+ * for a query and merging a month for sealing hold it shared. The Python recognizer run
+ * without --emit appends to the current month's file itself and takes no lock; it is only
+ * kept apart from sealing by sealing never touching the current month.
+ */
+public class AttendancePartitions {
+
+    static final String HEADER = "Username,Timestamp,Section";
+    private static final String MANIFEST_FILE = "manifest.csv";
+    private static final String MANIFEST_HEADER = "File,Rows,Bytes,Sections";
+    private static final String UNDATED = "undated";
+    private static final String COMPRESSED_SUFFIX = ".csv.gz";
+    private static final Pattern PARTITION_NAME = Pattern.compile("(\\d{4}-\\d{2}|" + UNDATED + ")\\.csv(\\.gz)?");
+
+    /** One partition file; sections are only known for sealed ones. */
+    public static class Partition {
+        private final File file;
+        private final String month;
+        private final boolean compressed;
+        private final boolean sealed;
+        private final int rows;
+        private final Set<String> sections;
+
+        Partition(File file, String month, boolean compressed, boolean sealed, int rows, Set<String> sections) {
+            this.file = file;
+            this.month = month;
+            this.compressed = compressed;
+            this.sealed = sealed;
+            this.rows = rows;
+            this.sections = sections;
+        }
+
+        public File getFile() { return file; }
+
+        /** "2025-06", or null for rows without a readable timestamp. */
+        public String getMonth() { return month; }
+
+        public boolean isCompressed() { return compressed; }
+        public boolean isSealed() { return sealed; }
+
+        /** Row count recorded when sealed; -1 for an open partition. */
+        public int getRows() { return rows; }
+
+        public boolean mayContainSection(String section) {
+            return sections == null || sections.contains(AttendanceStore.normalizeSection(section));
+        }
+
+        /** Whether rows between the two epoch hours (inclusive) can be here; undated rows have no hour. */
+        public boolean mayContainHours(int fromHour, int toHour) {
+            if (month == null) return false;
+            return month.compareTo(monthOf(fromHour)) >= 0 && month.compareTo(monthOf(toHour)) <= 0;
+        }
+    }
+
+    public static File partitionDirectoryFor(String attendancePath) {
+        String base = attendancePath.endsWith(".csv") ? attendancePath.substring(0, attendancePath.length() - 4) : attendancePath;
+        return new File(base);
+    }
+
+    /** The open log that rows of the epoch hour's month are appended to. */
+    public static File partitionFileFor(String attendancePath, int epochHour) {
+        String name = epochHour == AttendanceManager.INVALID_HOUR ? UNDATED : monthOf(epochHour);
+        return new File(partitionDirectoryFor(attendancePath), name + ".csv");
+    }
+
+    /** "2025-06" for an epoch hour. */
+    public static String monthOf(int epochHour) {
+        return AttendanceManager.formatDate(epochHour).substring(0, 7);
+    }
+
+    /** Every partition in month order, undated last, migrating the monolithic file first if needed. */
+    public static ArrayList<Partition> partitions(String attendancePath) throws IOException {
+        migrateIfNeeded(attendancePath);
+        File directory = partitionDirectoryFor(attendancePath);
+        HashMap<String, String[]> manifest = readManifest(directory);
+        String[] names = directory.list();
+        if (names == null) return new ArrayList<>();
+        Arrays.sort(names);
+
+        ArrayList<Partition> partitions = new ArrayList<>();
+        Partition undated = null;
+        for (String name : names) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (!matcher.matches()) continue;
+            File file = new File(directory, name);
+            String month = UNDATED.equals(matcher.group(1)) ? null : matcher.group(1);
+            boolean compressed = matcher.group(2) != null;
+            String[] entry = manifest.get(name);
+            Partition partition;
+            if (entry != null && Long.parseLong(entry[2]) == file.length()) {
+                TreeSet<String> sections = new TreeSet<>();
+                if (entry.length > 3 && !entry[3].isEmpty()) sections.addAll(Arrays.asList(entry[3].split(";")));
+                partition = new Partition(file, month, compressed, true, Integer.parseInt(entry[1]), Collections.unmodifiableSet(sections));
+            } else {
+                partition = new Partition(file, month, compressed, false, -1, null);
+            }
+            if (month == null) {
+                undated = partition;
+            } else {
+                partitions.add(partition);
+            }
+        }
+        if (undated != null) partitions.add(undated);
+        return partitions;
+    }
+
+    /**
+     * Seals every month before the current one: its files become one file, compressed if asked,
+     * with a manifest line and, when compressed, an hour index. Returns the number of months
+     * sealed. The merged files are written under the shared lock, so readers carry on meanwhile;
+     * only swapping them in takes the exclusive lock, and a month appended to in between is left
+     * for the next seal.
+     */
+    @SuppressWarnings("try")
+    public static int seal(String attendancePath, boolean compress) throws IOException {
+        migrateIfNeeded(attendancePath);
+        String currentMonth = YearMonth.now().toString();
+        File directory = partitionDirectoryFor(attendancePath);
+        ArrayList<MergedMonth> merged = new ArrayList<>();
+        ArrayList<File> unindexed = new ArrayList<>();
+        int sealed = 0;
+        try {
+            try (DataFileLock lock = DataFileLock.acquireShared(attendancePath)) {
+                for (ArrayList<Partition> files : closedMonths(attendancePath, currentMonth).values()) {
+                    Partition only = files.get(0);
+                    if (files.size() == 1 && only.isSealed() && (only.isCompressed() || !compress)) {
+                        // Months sealed before hour indexes existed get one now.
+                        if (only.isCompressed() && !AttendanceStore.indexFileFor(only.getFile()).exists()) unindexed.add(only.getFile());
+                        continue;
+                    }
+                    merged.add(merge(directory, files, compress));
+                }
+            }
+            if (!merged.isEmpty()) {
+                sealed = swapIn(attendancePath, currentMonth, merged);
+            }
+        } finally {
+            for (MergedMonth month : merged) {
+                Files.deleteIfExists(month.temp.toPath());
+                if (month.indexTemp != null) Files.deleteIfExists(month.indexTemp.toPath());
+            }
+        }
+
+        if (!unindexed.isEmpty()) {
+            try (DataFileLock lock = DataFileLock.acquireShared(attendancePath)) {
+                for (File partition : unindexed) {
+                    if (partition.exists()) writeIndex(partition);
+                }
+            }
+        }
+        return sealed;
+    }
+
+    // Moves merged months into place unless their files changed since they were merged; returns how many moved.
+    @SuppressWarnings("try")
+    private static int swapIn(String attendancePath, String currentMonth, ArrayList<MergedMonth> merged) throws IOException {
+        File directory = partitionDirectoryFor(attendancePath);
+        int sealed = 0;
+        try (DataFileLock lock = DataFileLock.acquire(attendancePath)) {
+            TreeMap<String, ArrayList<Partition>> byMonth = closedMonths(attendancePath, currentMonth);
+            HashMap<String, String[]> manifest = readManifest(directory);
+            for (MergedMonth month : merged) {
+                ArrayList<Partition> files = byMonth.get(month.month);
+                if (!month.isCurrent(files)) continue;
+                moveIntoPlace(month.temp, month.target);
+                if (month.indexTemp != null) moveIntoPlace(month.indexTemp, AttendanceStore.indexFileFor(month.target));
+                for (Partition partition : files) {
+                    manifest.remove(partition.getFile().getName());
+                    if (!partition.getFile().equals(month.target)) Files.deleteIfExists(partition.getFile().toPath());
+                    DataCache.invalidate(partition.getFile().getPath());
+                }
+                manifest.put(month.target.getName(), new String[]{month.target.getName(), String.valueOf(month.rows),
+                        String.valueOf(month.target.length()), month.sections});
+                DataCache.invalidate(month.target.getPath());
+                sealed++;
+            }
+            if (sealed > 0) writeManifest(directory, manifest);
+        }
+        return sealed;
+    }
+
+    // Partitions of the months before currentMonth, by month.
+    private static TreeMap<String, ArrayList<Partition>> closedMonths(String attendancePath, String currentMonth) throws IOException {
+        TreeMap<String, ArrayList<Partition>> byMonth = new TreeMap<>();
+        for (Partition partition : partitions(attendancePath)) {
+            if (partition.getMonth() == null || partition.getMonth().compareTo(currentMonth) >= 0) continue;
+            ArrayList<Partition> files = byMonth.get(partition.getMonth());
+            if (files == null) {
+                files = new ArrayList<>();
+                byMonth.put(partition.getMonth(), files);
+            }
+            files.add(partition);
+        }
+        return byMonth;
+    }
+
+    /** One closed month's files merged into a temporary file (and index), with the lengths they were read at. */
+    private static class MergedMonth {
+        final String month;
+        final File temp;
+        final File target;
+        final HashMap<File, Long> sourceLengths = new HashMap<>();
+        File indexTemp;
+        int rows;
+        String sections;
+
+        MergedMonth(String month, File temp, File target) {
+            this.month = month;
+            this.temp = temp;
+            this.target = target;
+        }
+
+        // False when a file of the month appeared, went or grew since it was merged.
+        boolean isCurrent(ArrayList<Partition> files) {
+            if (files == null || files.size() != sourceLengths.size()) return false;
+            for (Partition partition : files) {
+                Long length = sourceLengths.get(partition.getFile());
+                if (length == null || length != partition.getFile().length()) return false;
+            }
+            return true;
+        }
+    }
+
+    private static MergedMonth merge(File directory, ArrayList<Partition> files, boolean compress) throws IOException {
+        String month = files.get(0).getMonth();
+        File target = new File(directory, month + (compress ? COMPRESSED_SUFFIX : ".csv"));
+        // The temp name keeps .gz, so an AttendanceStore reads it as compressed when indexing it.
+        // Its name must not map to the month's current index, which AttendanceStore would try first.
+        File temp = Files.createTempFile(directory.toPath(), "sealing-" + month + "-", compress ? ".tmp.gz" : ".tmp").toFile();
+        MergedMonth merged = new MergedMonth(month, temp, target);
+        ArrayList<String[]> rows = new ArrayList<>();
+        for (Partition partition : files) {
+            merged.sourceLengths.put(partition.getFile(), partition.getFile().length());
+            readRows(partition.getFile(), rows);
+        }
+        writeRowsTo(merged.temp, rows, compress);
+        TreeSet<String> sections = new TreeSet<>();
+        for (String[] row : rows) {
+            if (row.length >= 3) sections.add(AttendanceStore.normalizeSection(row[2]));
+        }
+        merged.rows = rows.size();
+        merged.sections = String.join(";", sections);
+        if (compress) {
+            // Same bytes, so the index matches the target's length once the temp file is moved there.
+            merged.indexTemp = Files.createTempFile(directory.toPath(), month + ".", ".hours.tmp").toFile();
+            AttendanceStore store = new AttendanceStore(temp);
+            store.refresh();
+            store.writeIndex(merged.indexTemp);
+        }
+        return merged;
+    }
+
+    @SuppressWarnings("try")
+    public static void migrateIfNeeded(String attendancePath) throws IOException {
+        File directory = partitionDirectoryFor(attendancePath);
+        File monolithic = new File(attendancePath);
+        if (directory.isDirectory() && !monolithic.exists()) return;
+
+        try (DataFileLock lock = DataFileLock.acquire(attendancePath)) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create attendance directory " + directory);
+            }
+            if (!monolithic.exists()) return;
+
+            ArrayList<String[]> rows = new ArrayList<>();
+            readRows(monolithic, rows);
+            TreeMap<String, ArrayList<String[]>> byPartition = new TreeMap<>();
+            for (String[] row : rows) {
+                File partition = partitionFileFor(attendancePath, row.length >= 2 ? AttendanceManager.parseEpochHour(row[1]) : AttendanceManager.INVALID_HOUR);
+                ArrayList<String[]> partitionRows = byPartition.get(partition.getPath());
+                if (partitionRows == null) {
+                    partitionRows = new ArrayList<>();
+                    byPartition.put(partition.getPath(), partitionRows);
+                }
+                partitionRows.add(row);
+            }
+            for (String partitionPath : byPartition.keySet()) {
+                File partition = new File(partitionPath);
+                // The recognizer may already have started the current month's file; its rows follow the migrated ones.
+                ArrayList<String[]> partitionRows = byPartition.get(partitionPath);
+                if (partition.exists()) readRows(partition, partitionRows);
+                writeRows(partition, partitionRows, false);
+                DataCache.invalidate(partitionPath);
+            }
+
+            Files.move(monolithic.toPath(), new File(attendancePath + ".migrated").toPath(), StandardCopyOption.REPLACE_EXISTING);
+            DataCache.invalidate(attendancePath);
+            System.out.println("Migrated " + attendancePath + " into " + byPartition.size() + " partition(s) under " + directory);
+        }
+    }
+
+    // The per-student hour bitmaps of a compressed partition sealed before indexes existed.
+    private static void writeIndex(File partition) throws IOException {
+        AttendanceStore store = new AttendanceStore(partition);
+        store.refresh();
+        File target = AttendanceStore.indexFileFor(partition);
+        // Sealers in other processes may index the same month at once, so each writes its own temp file.
+        File temp = Files.createTempFile(target.getAbsoluteFile().getParentFile().toPath(), target.getName(), ".tmp").toFile();
+        try {
+            store.writeIndex(temp);
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /** Appends the rows of a plain or gzip-compressed attendance file, skipping the header. */
+    static void readRows(File file, ArrayList<String[]> into) throws IOException {
+        if (file.getName().endsWith(".gz")) {
+            try (InputStream in = new GZIPInputStream(new FileInputStream(file));
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line = reader.readLine();
+                while ((line = reader.readLine()) != null) {
+                    String[] row = splitRow(line);
+                    if (row.length > 0) into.add(row);
+                }
+            }
+        } else {
+            AttendanceManager.readAttendanceRecords(file, 0, into);
+        }
+    }
+
+    // Trimmed fields without trailing empty ones, as ChunkedCSVReader splits them.
+    private static String[] splitRow(String line) {
+        String[] fields = line.split(",");
+        int count = fields.length;
+        for (int i = 0; i < count; i++) {
+            fields[i] = fields[i].trim();
+        }
+        while (count > 0 && fields[count - 1].isEmpty()) count--;
+        return count == fields.length ? fields : Arrays.copyOf(fields, count);
+    }
+
+    // Written aside, synced and moved into place, so a partition is never seen half-written.
+    private static void writeRows(File target, ArrayList<String[]> rows, boolean compress) throws IOException {
+        File temp = new File(target.getPath() + ".tmp");
+        writeRowsTo(temp, rows, compress);
+        moveIntoPlace(temp, target);
+    }
+
+    private static void writeRowsTo(File temp, ArrayList<String[]> rows, boolean compress) throws IOException {
+        try (FileOutputStream file = new FileOutputStream(temp)) {
+            OutputStream out = compress ? new GZIPOutputStream(file) : file;
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write(HEADER);
+            writer.write('\n');
+            for (String[] row : rows) {
+                writer.write(String.join(",", row));
+                writer.write('\n');
+            }
+            writer.flush();
+            if (compress) ((GZIPOutputStream) out).finish();
+            file.getFD().sync();
+        }
+    }
+
+    private static HashMap<String, String[]> readManifest(File directory) throws IOException {
+        HashMap<String, String[]> manifest = new HashMap<>();
+        File file = new File(directory, MANIFEST_FILE);
+        if (!file.exists()) return manifest;
+        try (ChunkedCSVReader reader = new ChunkedCSVReader(file)) {
+            reader.skipLine();
+            while (reader.next()) {
+                if (reader.getFieldCount() < 3) continue;
+                String[] row = new String[reader.getFieldCount()];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = reader.getString(i);
+                }
+                manifest.put(row[0], row);
+            }
+        }
+        return manifest;
+    }
+
+    private static void writeManifest(File directory, HashMap<String, String[]> manifest) throws IOException {
+        File target = new File(directory, MANIFEST_FILE);
+        File temp = new File(directory, MANIFEST_FILE + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp);
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            writer.write(MANIFEST_HEADER);
+            writer.write('\n');
+            for (String name : new TreeSet<>(manifest.keySet())) {
+                writer.write(String.join(",", manifest.get(name)));
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        moveIntoPlace(temp, target);
+    }
+
+    private static void moveIntoPlace(File temp, File target) throws IOException {
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * One section's attendance at a point in time: the class hours held, and for every enrolled
+ * or recorded student the hours attended. AttendanceStore keeps the underlying hour sets up to
+ * date as rows arrive, so taking a rollup costs one step per student and partition, not a pass
+ * over the log.
+ */
+public class AttendanceRollup {
+
+    /** The usual minimum attendance, in percent. */
+    public static final double DEFAULT_THRESHOLD = 75.0;
+
+    public static class StudentAttendance {
+        private final String username;
+        private final boolean enrolled;
+        private final int attendedHours;
+        private final int heldHours;
+
+        StudentAttendance(String username, boolean enrolled, int attendedHours, int heldHours) {
+            this.username = username;
+            this.enrolled = enrolled;
+            this.attendedHours = attendedHours;
+            this.heldHours = heldHours;
+        }
+
+        public String getUsername() { return username; }
+
+        /** False for a student recorded in the section who has no marks entry for it. */
+        public boolean isEnrolled() { return enrolled; }
+
+        public int getAttendedHours() { return attendedHours; }
+
+        /** Attended hours as a percentage of the hours held; 100 while none have been held. */
+        public double getPercentage() {
+            return heldHours == 0 ? 100.0 : attendedHours * 100.0 / heldHours;
+        }
+    }
+
+    private final String section;
+    private final int heldHours;
+    private final List<StudentAttendance> students;
+
+    AttendanceRollup(String section, int heldHours, ArrayList<StudentAttendance> students) {
+        this.section = section;
+        this.heldHours = heldHours;
+        this.students = Collections.unmodifiableList(students);
+    }
+
+    /**
+     * Every enrolled username, at zero hours if never recorded, followed by anyone else recorded
+     * in the section; attended is keyed by lower-case username and names gives its display form.
+     */
+    static AttendanceRollup of(String section, HourBitmap held, HashMap<String, HourBitmap> attended,
+                               HashMap<String, String> names, Collection<String> enrolledUsernames) {
+        int heldHours = held.cardinality();
+        ArrayList<StudentAttendance> students = new ArrayList<>();
+        HashSet<String> listed = new HashSet<>();
+        for (String username : sorted(enrolledUsernames)) {
+            String lower = username.trim().toLowerCase();
+            if (!listed.add(lower)) continue;
+            HourBitmap hours = attended.get(lower);
+            students.add(new StudentAttendance(username.trim(), true, hours == null ? 0 : hours.cardinality(), heldHours));
+        }
+        ArrayList<String> others = new ArrayList<>();
+        for (String lower : attended.keySet()) {
+            if (!listed.contains(lower)) others.add(names.get(lower));
+        }
+        for (String username : sorted(others)) {
+            students.add(new StudentAttendance(username, false, attended.get(username.toLowerCase()).cardinality(), heldHours));
+        }
+        return new AttendanceRollup(AttendanceStore.normalizeSection(section), heldHours, students);
+    }
+
+    private static ArrayList<String> sorted(Collection<String> usernames) {
+        ArrayList<String> sorted = new ArrayList<>(usernames);
+        sorted.sort(String.CASE_INSENSITIVE_ORDER);
+        return sorted;
+    }
+
+    public String getSection() { return section; }
+
+    /** Distinct hours in which anyone was recorded in the section. */
+    public int getHeldHours() { return heldHours; }
+
+    /** Enrolled students first, then everyone else recorded, each group by username. */
+    public List<StudentAttendance> getStudents() { return students; }
+
+    public ArrayList<StudentAttendance> getBelow(double percentage) {
+        ArrayList<StudentAttendance> below = new ArrayList<>();
+        for (StudentAttendance student : students) {
+            if (student.getPercentage() < percentage) below.add(student);
+        }
+        return below;
+    }
+}
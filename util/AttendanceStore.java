@@ -0,0 +1,263 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The rows of one attendance log (Username,Timestamp,Section), indexed by student and section
+ * and by section alone. The log is append-only, so refresh() parses only the bytes added since
+ * the previous refresh; a log that shrank was rewritten and is read again from the start.
+ * Each row's timestamp is parsed once, on arrival, into an epoch hour, and every student and
+ * section keeps an HourBitmap of the distinct hours it appears in: a class hour is counted once
+ * however many times the recognizer logged the student during it. A section also links to its
+ * students' bitmaps, so a section rollup walks only that section's students. Queries are hash
+ * lookups and return copies, so callers may keep them across refreshes.
+ *
+ * One store holds one attendance partition (see AttendancePartitions). A gzip-compressed
+ * partition is sealed: its bitmaps are loaded from the hour index written next to it when it
+ * was sealed, and its rows are only decompressed if a query asks for rows.
+ */
+public class AttendanceStore {
+
+    private static final ArrayList<String[]> NONE = new ArrayList<>();
+    private static final int INDEX_MAGIC = 0x41484958; // "AHIX"
+    private static final int INDEX_VERSION = 1;
+
+    private final File file;
+    private long offset;
+    // False while a sealed partition's bitmaps came from its index and its rows are still compressed.
+    private boolean rowsLoaded = true;
+    private ArrayList<String[]> records = new ArrayList<>();
+    private HashMap<String, Rows> byStudentSection = new HashMap<>();
+    private HashMap<String, Rows> bySection = new HashMap<>();
+
+    private static class Rows {
+        final String username;
+        final ArrayList<String[]> rows = new ArrayList<>();
+        final HourBitmap hours;
+        // Section entries only: the student entries of the section by lower-case username.
+        final HashMap<String, Rows> students = new HashMap<>();
+
+        Rows(String username, HourBitmap hours) {
+            this.username = username;
+            this.hours = hours;
+        }
+
+        void add(String[] row, int epochHour) {
+            rows.add(row);
+            if (epochHour != AttendanceManager.INVALID_HOUR) hours.add(epochHour);
+        }
+    }
+
+    public AttendanceStore(File file) {
+        this.file = file;
+    }
+
+    /** The hour index of a compressed partition: data/attendance/2025-06.csv.gz -> 2025-06.hours. */
+    public static File indexFileFor(File partition) {
+        String name = partition.getName();
+        return new File(partition.getParentFile(), name.substring(0, name.indexOf('.')) + ".hours");
+    }
+
+    public synchronized void refresh() throws IOException {
+        long length = file.length();
+        boolean compressed = file.getName().endsWith(".gz");
+        if (length < offset || (compressed && length != offset)) {
+            clear();
+        }
+        if (length > offset) {
+            if (compressed) {
+                // Sealed, so read whole, and again only if it was replaced.
+                if (!readIndex(length)) loadRows();
+                offset = length;
+            } else {
+                int before = records.size();
+                offset = AttendanceManager.readAttendanceRecords(file, offset, records);
+                for (int i = before; i < records.size(); i++) {
+                    index(records.get(i));
+                }
+            }
+        }
+    }
+
+    /** Key for a student in a section, matched case-insensitively like the rest of the application. */
+    public static String key(String username, String section) {
+        return username.trim().toLowerCase() + "," + normalizeSection(section);
+    }
+
+    public static String normalizeSection(String section) {
+        return section.trim().toUpperCase();
+    }
+
+    /** The student's rows for the section, in file order. */
+    public synchronized ArrayList<String[]> getRecords(String username, String section) throws IOException {
+        ensureRows();
+        Rows rows = byStudentSection.get(key(username, section));
+        return new ArrayList<>(rows != null ? rows.rows : NONE);
+    }
+
+    public synchronized ArrayList<String[]> getSectionRecords(String section) throws IOException {
+        ensureRows();
+        Rows rows = bySection.get(normalizeSection(section));
+        return new ArrayList<>(rows != null ? rows.rows : NONE);
+    }
+
+    /** Distinct epoch hours the student was recorded in the section, ascending. */
+    public synchronized int[] getAttendedHours(String username, String section) {
+        Rows rows = byStudentSection.get(key(username, section));
+        return rows != null ? rows.hours.toArray() : new int[0];
+    }
+
+    /** The hours of getAttendedHours() as a bitmap of its own. */
+    public synchronized HourBitmap getAttendedBitmap(String username, String section) {
+        Rows rows = byStudentSection.get(key(username, section));
+        return rows != null ? rows.hours.copy() : new HourBitmap();
+    }
+
+    /** Distinct epoch hours anyone was recorded in the section, i.e. the class hours held, as a bitmap of its own. */
+    public synchronized HourBitmap getSectionBitmap(String section) {
+        Rows rows = bySection.get(normalizeSection(section));
+        return rows != null ? rows.hours.copy() : new HourBitmap();
+    }
+
+    /**
+     * Adds the section's hours to held, and each student's to attended under the lower-case
+     * username, recording the username as first written in names.
+     */
+    public synchronized void collectSectionHours(String section, HourBitmap held, HashMap<String, HourBitmap> attended, HashMap<String, String> names) {
+        Rows sectionRows = bySection.get(normalizeSection(section));
+        if (sectionRows == null) return;
+        held.orInPlace(sectionRows.hours);
+        for (Map.Entry<String, Rows> student : sectionRows.students.entrySet()) {
+            HourBitmap hours = attended.get(student.getKey());
+            if (hours == null) {
+                hours = new HourBitmap();
+                attended.put(student.getKey(), hours);
+                names.put(student.getKey(), student.getValue().username);
+            }
+            hours.orInPlace(student.getValue().hours);
+        }
+    }
+
+    /** Usernames, as first written, of the students recorded in the section during the hour. */
+    public synchronized ArrayList<String> getPresentAt(String section, int epochHour) {
+        ArrayList<String> present = new ArrayList<>();
+        Rows sectionRows = bySection.get(normalizeSection(section));
+        if (sectionRows == null || !sectionRows.hours.contains(epochHour)) return present;
+        for (Rows student : sectionRows.students.values()) {
+            if (student.hours.contains(epochHour)) present.add(student.username);
+        }
+        return present;
+    }
+
+    public synchronized ArrayList<String[]> getAllRecords() throws IOException {
+        ensureRows();
+        return new ArrayList<>(records);
+    }
+
+    public synchronized int size() throws IOException {
+        ensureRows();
+        return records.size();
+    }
+
+    /**
+     * Writes every student's bitmap with the partition's current length, so a later store can
+     * load them instead of decompressing the partition, and can tell when the index is stale.
+     */
+    public synchronized void writeIndex(File indexFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeLong(offset);
+            out.writeInt(byStudentSection.size());
+            for (Map.Entry<String, Rows> student : byStudentSection.entrySet()) {
+                out.writeUTF(student.getValue().username);
+                out.writeUTF(student.getKey().substring(student.getKey().indexOf(',') + 1));
+                student.getValue().hours.writeTo(out);
+            }
+        }
+    }
+
+    // Loads the bitmaps from the partition's index; false when there is none for this length of the partition.
+    private boolean readIndex(long length) {
+        File indexFile = indexFileFor(file);
+        if (!indexFile.exists()) return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION || in.readLong() != length) return false;
+            int students = in.readInt();
+            for (int i = 0; i < students; i++) {
+                String username = in.readUTF();
+                String section = in.readUTF();
+                HourBitmap hours = HourBitmap.readFrom(in);
+                Rows studentRows = new Rows(username, hours);
+                byStudentSection.put(key(username, section), studentRows);
+                Rows sectionRows = bySection.get(section);
+                if (sectionRows == null) {
+                    sectionRows = new Rows(null, new HourBitmap());
+                    bySection.put(section, sectionRows);
+                }
+                sectionRows.hours.orInPlace(hours);
+                sectionRows.students.put(username.toLowerCase(), studentRows);
+            }
+            rowsLoaded = false;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Ignoring attendance index " + indexFile + ": " + e.getMessage());
+            clear();
+            return false;
+        }
+    }
+
+    private void ensureRows() throws IOException {
+        if (rowsLoaded) return;
+        long loaded = offset;
+        clear();
+        loadRows();
+        offset = loaded;
+    }
+
+    private void loadRows() throws IOException {
+        AttendancePartitions.readRows(file, records);
+        for (String[] row : records) {
+            index(row);
+        }
+        rowsLoaded = true;
+    }
+
+    private void clear() {
+        records = new ArrayList<>();
+        byStudentSection = new HashMap<>();
+        bySection = new HashMap<>();
+        offset = 0;
+        rowsLoaded = true;
+    }
+
+    // Rows without a username, timestamp and section stay in getAllRecords() but cannot be looked up.
+    private void index(String[] row) {
+        if (row.length < 3) return;
+        int epochHour = AttendanceManager.parseEpochHour(row[1]);
+        String username = row[0].trim();
+        Rows studentRows = add(byStudentSection, key(username, row[2]), username, row, epochHour);
+        Rows sectionRows = add(bySection, normalizeSection(row[2]), null, row, epochHour);
+        if (studentRows.rows.size() == 1) sectionRows.students.put(username.toLowerCase(), studentRows);
+    }
+
+    private static Rows add(HashMap<String, Rows> index, String key, String username, String[] row, int epochHour) {
+        Rows rows = index.get(key);
+        if (rows == null) {
+            rows = new Rows(username, new HourBitmap());
+            index.put(key, rows);
+        }
+        rows.add(row, epochHour);
+        return rows;
+    }
+}
@@ -1,12 +1,27 @@
 package util;
 
+import model.EnrollmentResult;
 import model.User;
 import model.Mark;
 import model.MarkUpdate;
 import model.Subject;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class CSVManager {
 
@@ -47,6 +62,7 @@ public class CSVManager {
                 writer.println(line);
             }
         }
+        DataCache.invalidate(filepath);
     }
 
     public static ArrayList<User> loadUsers(String filepath) throws IOException {
@@ -54,18 +70,48 @@ public class CSVManager {
         File file = new File(filepath);
         if (!file.exists()) return users;
 
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            br.readLine(); 
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 4) {
-                    users.add(new User(parts[0], parts[1], parts[2], parts[3]));
-                }
-            }
+        UserRowIterator rows = new UserRowIterator(file);
+        while (rows.hasNext()) {
+            users.add(rows.next());
         }
         return users;
     }
+
+    // Close the stream (try-with-resources) if it may not be consumed to the end.
+    public static Stream<User> streamUsers(String filepath) throws IOException {
+        File file = new File(filepath);
+        if (!file.exists()) return Stream.empty();
+        return new UserRowIterator(file).stream();
+    }
+
+    public static ArrayList<User> findUsers(String filepath, Predicate<User> filter) throws IOException {
+        try (Stream<User> users = streamUsers(filepath)) {
+            return users.filter(filter).collect(Collectors.toCollection(ArrayList::new));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Stops reading the file at the first match.
+    public static User findFirstUser(String filepath, Predicate<User> filter) throws IOException {
+        try (Stream<User> users = streamUsers(filepath)) {
+            return users.filter(filter).findFirst().orElse(null);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static class UserRowIterator extends CSVRowIterator<User> {
+        UserRowIterator(File file) throws IOException {
+            super(file);
+        }
+
+        @Override
+        protected User parseRow() {
+            if (reader.getFieldCount() < 4) return null;
+            return new User(reader.getString(0), reader.getString(1), reader.getInternedString(2), reader.getString(3));
+        }
+    }
     
     public static void saveUsers(String filepath, ArrayList<User> users) throws IOException {
         try (PrintWriter writer = new PrintWriter(new FileWriter(filepath))) {
@@ -75,107 +121,385 @@ public class CSVManager {
                 writer.println(line);
             }
         }
+        DataCache.invalidate(filepath);
     }
     public static void enrollStudents(String filepath, String subjectCode, ArrayList<String> usernames) throws IOException {
-        ArrayList<Mark> allMarks = loadMarks(filepath);
+        enrollStudents(filepath, Collections.singletonMap(subjectCode, usernames));
+    }
 
-        ArrayList<String> alreadyEnrolled = new ArrayList<>();
-        for (Mark mark : allMarks) {
-            if (mark.getSubject().equalsIgnoreCase(subjectCode)) {
-                alreadyEnrolled.add(mark.getUsername());
+    /**
+     * Enrolls each subject's students in one pass: duplicates and students already in the subject
+     * are skipped with hash lookups, and each touched subject gets a single journal append.
+     * Subject codes and usernames are matched case-insensitively, as MarksRepository keys them,
+     * so a username that differs only in case from one already enrolled (or earlier in the
+     * request) would share that student's row; it is rejected and reported instead.
+     */
+    @SuppressWarnings("try")
+    public static ArrayList<EnrollmentResult> enrollStudents(String filepath, Map<String, ? extends Collection<String>> studentsBySubject) throws IOException {
+        // Merge subject codes that differ only in case; the first spelling is the one journaled.
+        LinkedHashMap<String, String> subjectCodes = new LinkedHashMap<>();
+        LinkedHashMap<String, ArrayList<String>> requested = new LinkedHashMap<>();
+        for (Map.Entry<String, ? extends Collection<String>> entry : studentsBySubject.entrySet()) {
+            String subject = MarksRepository.normalizeSubject(entry.getKey());
+            subjectCodes.putIfAbsent(subject, entry.getKey().trim());
+            ArrayList<String> usernames = requested.get(subject);
+            if (usernames == null) {
+                usernames = new ArrayList<>();
+                requested.put(subject, usernames);
             }
+            usernames.addAll(entry.getValue());
         }
 
-        for (String username : usernames) {
-            if (!alreadyEnrolled.contains(username)) {
-                allMarks.add(new Mark(subjectCode, username));
+        ArrayList<EnrollmentResult> results = new ArrayList<>();
+        for (String subject : requested.keySet()) {
+            String subjectCode = subjectCodes.get(subject);
+            String shardPath = subjectShard(filepath, subjectCode);
+            ArrayList<String> added = new ArrayList<>();
+            ArrayList<String> caseConflicts = new ArrayList<>();
+            int alreadyEnrolled = 0;
+            // Held across check and append so concurrent enrollments can't both count a student as added.
+            try (DataFileLock lock = DataFileLock.acquire(shardPath)) {
+                MarksRepository existing = loadMarksFile(shardPath);
+                // The spelling each student is known by: as enrolled, else as first requested.
+                HashMap<String, String> spellings = new HashMap<>();
+                HashSet<String> handled = new HashSet<>();
+                for (String username : requested.get(subject)) {
+                    String trimmed = username.trim();
+                    if (trimmed.isEmpty()) continue;
+                    String key = trimmed.toLowerCase();
+                    String spelling = spellings.get(key);
+                    if (spelling == null) {
+                        Mark enrolled = existing.find(subjectCode, trimmed);
+                        spelling = enrolled != null ? enrolled.getUsername().trim() : trimmed;
+                        spellings.put(key, spelling);
+                    }
+                    if (!spelling.equals(trimmed)) {
+                        if (!caseConflicts.contains(trimmed)) caseConflicts.add(trimmed);
+                    } else if (handled.add(key)) {
+                        if (existing.isEnrolled(subjectCode, trimmed)) {
+                            alreadyEnrolled++;
+                        } else {
+                            added.add(trimmed);
+                        }
+                    }
+                }
+                MarksJournal.appendEnrollments(shardPath, subjectCode, added);
             }
+            results.add(new EnrollmentResult(subjectCode, added.size(), alreadyEnrolled, caseConflicts));
         }
+        return results;
+    }
 
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filepath))) {
-            writer.println(String.join(",", MARKS_HEADER));
-            for (Mark mark : allMarks) {
-                writer.println(mark.toCsvString());
+    /** Bulk enrollment from a roster CSV with a header and one SubjectCode,Username pair per row. */
+    public static ArrayList<EnrollmentResult> enrollStudentsFromRoster(String filepath, String rosterPath) throws IOException {
+        LinkedHashMap<String, ArrayList<String>> studentsBySubject = new LinkedHashMap<>();
+        try (CSVRowIterator<String[]> rows = new CSVRowIterator<String[]>(new File(rosterPath)) {
+            @Override
+            protected String[] parseRow() {
+                if (reader.getFieldCount() < 2) return null;
+                return new String[]{reader.getInternedString(0), reader.getString(1)};
             }
+        }) {
+            while (rows.hasNext()) {
+                String[] row = rows.next();
+                ArrayList<String> usernames = studentsBySubject.get(row[0]);
+                if (usernames == null) {
+                    usernames = new ArrayList<>();
+                    studentsBySubject.put(row[0], usernames);
+                }
+                usernames.add(row[1]);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+        return enrollStudents(filepath, studentsBySubject);
+    }
+
+    // Marks are stored per subject (see MarksShards); filepath is the logical data/marks.csv.
+    private static String subjectShard(String filepath, String subjectCode) throws IOException {
+        MarksShards.migrateIfNeeded(filepath);
+        return MarksShards.shardPathFor(filepath, subjectCode);
     }
+
     public static ArrayList<Mark> loadMarks(String filepath) throws IOException {
+        return loadMarksRepository(filepath).getAllMarks();
+    }
+
+    // All subjects, shard by shard.
+    public static MarksRepository loadMarksRepository(String filepath) throws IOException {
+        MarksRepository repository = new MarksRepository();
+        for (String shardPath : MarksShards.shardPaths(filepath)) {
+            for (Mark mark : loadMarksFile(shardPath).getAllMarks()) {
+                repository.add(mark);
+            }
+        }
+        return repository;
+    }
+
+    // Reads only the subject's own shard.
+    public static MarksRepository loadSubjectMarks(String filepath, String subjectCode) throws IOException {
+        return loadMarksFile(subjectShard(filepath, subjectCode));
+    }
+
+    // Loads one compacted marks CSV and replays its journaled updates on top of it.
+    @SuppressWarnings("try")
+    static MarksRepository loadMarksFile(String csvPath) throws IOException {
+        try (DataFileLock lock = DataFileLock.acquireShared(csvPath)) {
+            MarksRepository repository = new File(csvPath).exists() ? new MarksRepository(parseMarksFile(csvPath)) : new MarksRepository();
+            MarksJournal.replay(csvPath, repository);
+            return repository;
+        }
+    }
+
+    // Reads the binary snapshot when it matches the CSV; otherwise parses the CSV and refreshes the snapshot.
+    static ArrayList<Mark> parseMarksFile(String filepath) throws IOException {
         ArrayList<Mark> marks = new ArrayList<>();
+        MarkTable snapshot = MarksSnapshot.loadIfFresh(filepath);
+        if (snapshot != null) {
+            for (int row = 0; row < snapshot.size(); row++) {
+                marks.add(copyOf(snapshot.getRow(row)));
+            }
+            return marks;
+        }
+
+        MarkTable table = new MarkTable();
+        MarkRowIterator rows = openMarkRows(filepath, null);
+        while (rows.hasNext()) {
+            Mark mark = rows.next();
+            marks.add(mark);
+            table.add(mark);
+        }
+        writeSnapshotQuietly(filepath, table);
+        return marks;
+    }
+
+    private static Mark copyOf(Mark row) {
+        return new Mark(row.getSubject(), row.getUsername(),
+            row.getQuiz1(), row.getQuiz2(), row.getQuiz3(), row.getQuiz4(),
+            row.getAssignment1(), row.getAssignment2(), row.getAssignment3(), row.getAssignment4(),
+            row.getMid(), row.getFinalExam());
+    }
+
+    // A snapshot is only an accelerator, so failing to write one must not fail the load or save.
+    private static void writeSnapshotQuietly(String filepath, MarkTable table) {
+        try {
+            MarksSnapshot.write(filepath, table);
+        } catch (IOException e) {
+            System.err.println("Could not write marks snapshot: " + e.getMessage());
+        }
+    }
+
+    // Same rows as loadMarks(), stored column-wise for whole-class aggregates. Served from the snapshot when it is fresh.
+    public static MarkTable loadMarkTable(String filepath) throws IOException {
+        ArrayList<String> shardPaths = MarksShards.shardPaths(filepath);
+        if (shardPaths.size() == 1) return loadMarkTableFile(shardPaths.get(0));
+
+        MarkTable table = new MarkTable();
+        for (String shardPath : shardPaths) {
+            MarkTable shard = loadMarkTableFile(shardPath);
+            for (int row = 0; row < shard.size(); row++) {
+                table.add(shard.getRow(row));
+            }
+        }
+        return table;
+    }
+
+    @SuppressWarnings("try")
+    static MarkTable loadMarkTableFile(String csvPath) throws IOException {
+        try (DataFileLock lock = DataFileLock.acquireShared(csvPath)) {
+            MarkTable table = MarksSnapshot.loadIfFresh(csvPath);
+            if (table == null) {
+                table = new File(csvPath).exists() ? readMarksCsv(csvPath) : new MarkTable();
+                writeSnapshotQuietly(csvPath, table);
+            }
+            MarksJournal.replay(csvPath, table);
+            return table;
+        }
+    }
+
+    // Parses the marks CSV alone, without snapshot or journal.
+    static MarkTable readMarksCsv(String filepath) throws IOException {
+        MarkTable table = new MarkTable();
+        MarkRowIterator rows = openMarkRows(filepath, null);
+        while (rows.hasNext()) {
+            table.add(rows.next());
+        }
+        return table;
+    }
+
+    // Streams shard by shard, so exporting never holds all marks in memory.
+    public static void exportMarksCsv(String filepath, String exportPath) throws IOException {
+        try (Stream<Mark> marks = streamMarks(filepath)) {
+            writeMarksCsv(new File(exportPath), marks.iterator());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Replaces all marks with the contents of an admin-supplied CSV and discards pending journal updates.
+    @SuppressWarnings("try")
+    public static void importMarksCsv(String importPath, String filepath) throws IOException {
+        LinkedHashMap<String, ArrayList<Mark>> imported = new LinkedHashMap<>();
+        MarkRowIterator rows = new MarkRowIterator(new File(importPath), null);
+        while (rows.hasNext()) {
+            Mark mark = rows.next();
+            String shardPath = MarksShards.shardPathFor(filepath, mark.getSubject());
+            ArrayList<Mark> shard = imported.get(shardPath);
+            if (shard == null) {
+                shard = new ArrayList<>();
+                imported.put(shardPath, shard);
+            }
+            shard.add(mark);
+        }
+        // Shard by shard: each subject is replaced atomically, the import as a whole is not.
+        for (String shardPath : MarksShards.shardPaths(filepath)) {
+            if (imported.containsKey(shardPath)) continue;
+            try (DataFileLock lock = DataFileLock.acquire(shardPath)) {
+                MarksJournal.clear(shardPath);
+                Files.deleteIfExists(new File(shardPath).toPath());
+                Files.deleteIfExists(MarksJournal.journalFileFor(shardPath).toPath());
+                Files.deleteIfExists(MarksSnapshot.snapshotFileFor(shardPath).toPath());
+                DataCache.invalidate(shardPath);
+            }
+        }
+        for (String shardPath : imported.keySet()) {
+            try (DataFileLock lock = DataFileLock.acquire(shardPath)) {
+                replaceMarksFile(shardPath, imported.get(shardPath));
+                MarksJournal.clear(shardPath);
+            }
+        }
+    }
+
+    /**
+     * Streams marks rows, with pending journal updates applied, without materializing the file.
+     * Close the stream (try-with-resources) if it may not be consumed to the end.
+     */
+    public static Stream<Mark> streamMarks(String filepath) throws IOException {
+        // Shards are opened one after another as the stream reaches them.
+        return MarksShards.shardPaths(filepath).stream().flatMap(shardPath -> {
+            try {
+                return streamMarksFile(shardPath);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @SuppressWarnings("try")
+    private static Stream<Mark> streamMarksFile(String csvPath) throws IOException {
+        try (DataFileLock lock = DataFileLock.acquireShared(csvPath)) {
+            return openMarkRows(csvPath, MarksJournal.readPendingByKey(csvPath)).stream();
+        }
+    }
+
+    private static MarkRowIterator openMarkRows(String filepath, LinkedHashMap<String, ArrayList<String[]>> pending) throws IOException {
         File file = new File(filepath);
         if (!file.exists()) {
             try (PrintWriter writer = new PrintWriter(new FileWriter(filepath))) {
                 writer.println(String.join(",", MARKS_HEADER));
             }
-            return marks;
         }
+        return new MarkRowIterator(file, pending);
+    }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            br.readLine(); 
-            String line;
-            while ((line = br.readLine()) != null) {
-                 String[] row = line.split(",");
-                try {
-                    if (row.length >= 12) {
-                        // MODIFIED: Use a loop to parse all integer marks into a temporary array.
-                        int[] scores = new int[10];
-                        for (int i = 0; i < 10; i++) {
-                            // row[i + 2] corresponds to Quiz1, Quiz2, ..., Mid, Final
-                            scores[i] = Integer.parseInt(row[i + 2].trim());
-                        }
+    /**
+     * Parses marks.csv rows one at a time. When given the pending journal records, it applies them
+     * to the first row with a matching key and emits journal-only rows after the last CSV row,
+     * giving the same rows and order as a full load followed by MarksJournal.replay().
+     */
+    private static class MarkRowIterator extends CSVRowIterator<Mark> {
+        private final LinkedHashMap<String, ArrayList<String[]>> pending;
+        private final int[] scores = new int[10];
+        private Iterator<ArrayList<String[]>> journalOnlyRows;
 
-                        // Create the Mark object using the parsed scores.
-                        marks.add(new Mark(
-                            row[0].trim(), row[1].trim(),
-                            scores[0], scores[1], scores[2], scores[3], // Quizzes
-                            scores[4], scores[5], scores[6], scores[7], // Assignments
-                            scores[8], // Mid
-                            scores[9]  // Final
-                        ));
+        MarkRowIterator(File file, LinkedHashMap<String, ArrayList<String[]>> pending) throws IOException {
+            super(file);
+            this.pending = pending;
+        }
+
+        @Override
+        protected Mark parseRow() {
+            try {
+                if (reader.getFieldCount() < 12) return null;
+                // Fields 2..11 are Quiz1..Quiz4, Assign1..Assign4, Mid, Final.
+                for (int i = 0; i < 10; i++) {
+                    scores[i] = reader.getInt(i + 2);
+                }
+                Mark mark = new Mark(
+                    reader.getInternedString(0), reader.getInternedString(1),
+                    scores[0], scores[1], scores[2], scores[3], // Quizzes
+                    scores[4], scores[5], scores[6], scores[7], // Assignments
+                    scores[8], // Mid
+                    scores[9]  // Final
+                );
+                if (pending != null && !pending.isEmpty()) {
+                    ArrayList<String[]> records = pending.remove(MarksRepository.key(mark.getSubject(), mark.getUsername()));
+                    if (records != null) {
+                        for (String[] record : records) {
+                            MarksJournal.apply(record, mark);
+                        }
                     }
-                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-                    System.err.println("Skipping malformed row in marks.csv: " + line);
                 }
+                return mark;
+            } catch (NumberFormatException e) {
+                System.err.println("Skipping malformed row in marks.csv: " + reader.getLine());
+                return null;
             }
         }
-        return marks;
-    }
 
-    public static void batchUpdateMarks(String filepath, String subjectCode, String type, ArrayList<MarkUpdate> marksToUpdate) throws IOException {
-        ArrayList<Mark> allMarks = loadMarks(filepath);
-
-        for (MarkUpdate update : marksToUpdate) {
-            Mark studentMark = null;
-            for (Mark existingMark : allMarks) {
-                if (existingMark.getUsername().equals(update.getUsername()) && existingMark.getSubject().equalsIgnoreCase(subjectCode)) {
-                    studentMark = existingMark;
-                    break;
-                }
-            }
-            if (studentMark == null) {
-                studentMark = new Mark(subjectCode, update.getUsername());
-                allMarks.add(studentMark);
+        @Override
+        protected Mark afterLastRow() {
+            if (pending == null) return null;
+            if (journalOnlyRows == null) {
+                journalOnlyRows = pending.values().iterator();
             }
-            
-            String typeLower = type.toLowerCase();
-            switch(typeLower) {
-                case "quiz1": studentMark.setQuiz1(update.getMark()); break;
-                case "quiz2": studentMark.setQuiz2(update.getMark()); break;
-                case "quiz3": studentMark.setQuiz3(update.getMark()); break;
-                case "quiz4": studentMark.setQuiz4(update.getMark()); break;
-                case "assignment1": studentMark.setAssignment1(update.getMark()); break;
-                case "assignment2": studentMark.setAssignment2(update.getMark()); break;
-                case "assignment3": studentMark.setAssignment3(update.getMark()); break;
-                case "assignment4": studentMark.setAssignment4(update.getMark()); break;
-                case "mid": studentMark.setMid(update.getMark()); break;
-                case "final": studentMark.setFinalExam(update.getMark()); break;
+            if (!journalOnlyRows.hasNext()) return null;
+            ArrayList<String[]> records = journalOnlyRows.next();
+            Mark mark = new Mark(records.get(0)[1], records.get(0)[2]);
+            for (String[] record : records) {
+                MarksJournal.apply(record, mark);
             }
+            return mark;
         }
+    }
 
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filepath))) {
+    // Appends the updates to the subject's journal; its shard CSV is only rewritten by compaction.
+    public static void batchUpdateMarks(String filepath, String subjectCode, String type, ArrayList<MarkUpdate> marksToUpdate) throws IOException {
+        MarksJournal.appendUpdates(subjectShard(filepath, subjectCode), subjectCode, type, marksToUpdate);
+    }
+
+    // Atomically replaces the marks CSV and refreshes its binary snapshot to match.
+    static void replaceMarksFile(String filepath, ArrayList<Mark> marks) throws IOException {
+        File target = new File(filepath);
+        File temp = new File(filepath + ".tmp");
+        writeMarksCsv(temp, marks);
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        DataCache.invalidate(filepath);
+
+        MarkTable table = new MarkTable();
+        for (Mark mark : marks) {
+            table.add(mark);
+        }
+        writeSnapshotQuietly(filepath, table);
+    }
+
+    static void writeMarksCsv(File file, ArrayList<Mark> marks) throws IOException {
+        writeMarksCsv(file, marks.iterator());
+    }
+
+    static void writeMarksCsv(File file, Iterator<Mark> marks) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file);
+             PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
             writer.println(String.join(",", MARKS_HEADER));
-            for (Mark mark : allMarks) {
-                writer.println(mark.toCsvString());
+            while (marks.hasNext()) {
+                writer.println(marks.next().toCsvString());
             }
+            writer.flush();
+            out.getFD().sync();
         }
     }
 }
\ No newline at end of file
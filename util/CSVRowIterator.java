@@ -0,0 +1,81 @@
+package util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily parses one CSV row per call to next(), so callers can filter or stop early
+ * without the whole file ever being materialized. The file is closed when the last
+ * row has been read, or when the iterator (or the stream built from it) is closed.
+ */
+abstract class CSVRowIterator<T> implements Iterator<T>, Closeable {
+
+    protected final ChunkedCSVReader reader;
+    private T nextRow;
+    private boolean exhausted;
+
+    CSVRowIterator(File file) throws IOException {
+        this.reader = new ChunkedCSVReader(file);
+        this.reader.skipLine();
+    }
+
+    /** Parses the reader's current line, or returns null to skip it. */
+    protected abstract T parseRow();
+
+    /** Called once the file is exhausted; subclasses may return extra rows until they return null. */
+    protected T afterLastRow() {
+        return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (nextRow == null && !exhausted) {
+                if (reader.next()) {
+                    nextRow = parseRow();
+                } else {
+                    nextRow = afterLastRow();
+                    if (nextRow == null) {
+                        exhausted = true;
+                        reader.close();
+                    }
+                }
+            }
+            return nextRow != null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        T row = nextRow;
+        nextRow = null;
+        return row;
+    }
+
+    @Override
+    public void close() {
+        exhausted = true;
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Wraps the iterator in a sequential stream; use it in try-with-resources if it may not be fully consumed. */
+    Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+}
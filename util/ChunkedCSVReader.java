@@ -0,0 +1,294 @@
+package util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Forward-only CSV cursor that scans file bytes directly instead of going through
+ * readLine() and String.split(). Integer columns are parsed in place and only the
+ * columns a caller asks for become Strings; repeated key columns can be shared
+ * through the reader's dictionary.
+ *
+ * The file is read through its channel into one reused heap buffer, CHUNK_SIZE bytes at
+ * a time, and close() releases the file at once. It is not memory-mapped: a mapping lives
+ * until its buffer is garbage-collected and meanwhile keeps the file locked on Windows,
+ * which would block the rename that replaces a marks shard during compaction.
+ *
+ * Fields are trimmed and trailing empty fields are dropped, matching what
+ * line.split(",") followed by trim() produced for the old loaders.
+ */
+public class ChunkedCSVReader implements Closeable {
+
+    static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final Dictionary dictionary;
+
+    private ByteBuffer buffer;
+    private long bufferStart;
+    private int position;
+
+    private int lineStart;
+    private int lineEnd;
+    private boolean lineTerminated;
+    private int[] fieldStart = new int[16];
+    private int[] fieldEnd = new int[16];
+    private int fieldCount;
+
+    public ChunkedCSVReader(File source) throws IOException {
+        this(source, new Dictionary());
+    }
+
+    public ChunkedCSVReader(File source, Dictionary dictionary) throws IOException {
+        this(source, 0, dictionary);
+    }
+
+    /** Starts reading at a byte offset that must be the start of a line, e.g. where a previous read stopped. */
+    public ChunkedCSVReader(File source, long startOffset, Dictionary dictionary) throws IOException {
+        this.file = new RandomAccessFile(source, "r");
+        this.channel = file.getChannel();
+        this.fileSize = channel.size();
+        this.dictionary = dictionary;
+        load(Math.min(startOffset, fileSize));
+    }
+
+    // Fills the buffer from offset on; the buffer is allocated once and reused for every chunk.
+    private void load(long offset) throws IOException {
+        int length = (int) Math.min(fileSize - offset, CHUNK_SIZE);
+        if (buffer == null || buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(length);
+        }
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+            // keep reading until the chunk is full
+        }
+        buffer.flip();
+        bufferStart = offset;
+        position = 0;
+    }
+
+    private boolean isLastChunk() {
+        return bufferStart + buffer.limit() >= fileSize;
+    }
+
+    /** Skips one line without splitting it, e.g. the header. Returns false at end of file. */
+    public boolean skipLine() throws IOException {
+        return advance(false);
+    }
+
+    /** Moves to the next line and splits it into fields. Returns false at end of file. */
+    public boolean next() throws IOException {
+        return advance(true);
+    }
+
+    private boolean advance(boolean split) throws IOException {
+        while (true) {
+            int limit = buffer.limit();
+            if (position >= limit) {
+                if (isLastChunk()) return false;
+                load(bufferStart + position);
+                continue;
+            }
+            int newline = position;
+            while (newline < limit && buffer.get(newline) != '\n') newline++;
+            if (newline == limit && !isLastChunk()) {
+                if (position == 0) {
+                    throw new IOException("CSV line longer than " + CHUNK_SIZE + " bytes at offset " + bufferStart);
+                }
+                load(bufferStart + position);
+                continue;
+            }
+            lineStart = position;
+            lineEnd = newline;
+            lineTerminated = newline < limit;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') lineEnd--;
+            position = Math.min(newline + 1, limit);
+            if (split) splitLine();
+            return true;
+        }
+    }
+
+    private void splitLine() {
+        fieldCount = 0;
+        int start = lineStart;
+        for (int i = lineStart; i <= lineEnd; i++) {
+            if (i == lineEnd || buffer.get(i) == ',') {
+                if (fieldCount == fieldStart.length) {
+                    int[] grownStart = new int[fieldCount * 2];
+                    int[] grownEnd = new int[fieldCount * 2];
+                    System.arraycopy(fieldStart, 0, grownStart, 0, fieldCount);
+                    System.arraycopy(fieldEnd, 0, grownEnd, 0, fieldCount);
+                    fieldStart = grownStart;
+                    fieldEnd = grownEnd;
+                }
+                int s = start;
+                int e = i;
+                while (s < e && isBlank(buffer.get(s))) s++;
+                while (e > s && isBlank(buffer.get(e - 1))) e--;
+                fieldStart[fieldCount] = s;
+                fieldEnd[fieldCount] = e;
+                fieldCount++;
+                start = i + 1;
+            }
+        }
+        while (fieldCount > 0 && fieldStart[fieldCount - 1] == fieldEnd[fieldCount - 1]) {
+            fieldCount--;
+        }
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    public String getString(int field) {
+        return decode(fieldStart[field], fieldEnd[field]);
+    }
+
+    /** Returns the field through the reader's dictionary, so equal values share one String. */
+    public String getInternedString(int field) {
+        return dictionary.lookup(buffer, fieldStart[field], fieldEnd[field]);
+    }
+
+    public int getInt(int field) {
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        if (start == end) throw new NumberFormatException("Empty field " + field);
+
+        boolean negative = false;
+        byte first = buffer.get(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            start++;
+            if (start == end) throw new NumberFormatException("Sign without digits in field " + field);
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) throw new NumberFormatException("Non-digit in field " + field);
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) throw new NumberFormatException("Overflow in field " + field);
+        }
+        if (negative) value = -value;
+        if (value > Integer.MAX_VALUE) throw new NumberFormatException("Overflow in field " + field);
+        return (int) value;
+    }
+
+    /** The raw current line, only materialized for error messages. */
+    public String getLine() {
+        return decode(lineStart, lineEnd);
+    }
+
+    /** File offset just past the current line. */
+    public long getOffset() {
+        return bufferStart + position;
+    }
+
+    /** File offset of the start of the current line. */
+    public long getLineStartOffset() {
+        return bufferStart + lineStart;
+    }
+
+    /**
+     * False for a last line with no newline yet. When tailing a file that is still being
+     * appended to, such a line may be incomplete and should be re-read on the next pass.
+     */
+    public boolean isLineTerminated() {
+        return lineTerminated;
+    }
+
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        file.close();
+    }
+
+    /**
+     * Open-addressing table from raw field bytes to a shared String, so a subject code or
+     * username that appears on thousands of rows is decoded once.
+     */
+    public static class Dictionary {
+        private byte[][] keys = new byte[256][];
+        private String[] values = new String[256];
+        private int[] hashes = new int[256];
+        private int size;
+
+        String lookup(ByteBuffer buffer, int start, int end) {
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            int mask = keys.length - 1;
+            int slot = mix(hash) & mask;
+            while (keys[slot] != null) {
+                if (hashes[slot] == hash && matches(keys[slot], buffer, start, end)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            byte[] key = new byte[end - start];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = buffer.get(start + i);
+            }
+            String value = new String(key, StandardCharsets.UTF_8);
+            keys[slot] = key;
+            values[slot] = value;
+            hashes[slot] = hash;
+            if (++size * 2 > keys.length) grow();
+            return value;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private static boolean matches(byte[] key, ByteBuffer buffer, int start, int end) {
+            if (key.length != end - start) return false;
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buffer.get(start + i)) return false;
+            }
+            return true;
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        private void grow() {
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            int[] oldHashes = hashes;
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[oldKeys.length * 2];
+            hashes = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == null) continue;
+                int slot = mix(oldHashes[i]) & mask;
+                while (keys[slot] != null) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+}
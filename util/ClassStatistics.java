@@ -0,0 +1,101 @@
+package util;
+
+/**
+ * Running count, mean and spread of a class's weighted scores, kept with Welford's update so
+ * a changed mark adjusts them in O(1) instead of rescanning the class. The standard deviation
+ * is the population one, as GradeCalculator has always used.
+ *
+ * Removing the current minimum or maximum cannot be undone without the other scores, so
+ * afterwards hasExactExtrema() is false until the owner rebuilds the statistics.
+ */
+public class ClassStatistics {
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private boolean exactExtrema = true;
+
+    public void add(double score) {
+        count++;
+        double delta = score - mean;
+        mean += delta / count;
+        m2 += delta * (score - mean);
+        min = Math.min(min, score);
+        max = Math.max(max, score);
+    }
+
+    public void remove(double score) {
+        if (count <= 1) {
+            count = 0;
+            mean = 0;
+            m2 = 0;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+            exactExtrema = true;
+            return;
+        }
+        double newMean = (count * mean - score) / (count - 1);
+        m2 = Math.max(0, m2 - (score - mean) * (score - newMean));
+        mean = newMean;
+        count--;
+        if (score <= min || score >= max) exactExtrema = false;
+    }
+
+    /** One student's score changed from before to after. */
+    public void replace(double before, double after) {
+        remove(before);
+        add(after);
+    }
+
+    /** Combines another class's statistics into this one (Chan et al.'s parallel update). */
+    public void merge(ClassStatistics other) {
+        if (other.count == 0) return;
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            min = other.min;
+            max = other.max;
+            exactExtrema = other.exactExtrema;
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * count * other.count / total;
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        exactExtrema &= other.exactExtrema;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getVariance() {
+        return count > 0 ? m2 / count : 0.0;
+    }
+
+    public double getStdDev() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public boolean hasExactExtrema() {
+        return exactExtrema;
+    }
+}
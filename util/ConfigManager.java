@@ -1,31 +1,255 @@
 package util;
 
+import model.Assessment;
+
 import java.io.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Reads and writes data/grading_policy.txt. The first line is the policy for every subject;
+ * later lines override it for one subject or change how marks are weighted:
+ *
+ *   relative
+ *   policy.CY1121=absolute
+ *   policy.MA1101=custom:A=90,B=80,C=70,D=60
+ *   weight.final=0.40            (quiz, assignment, mid or final; fractions of the weighted score)
+ *   max.mid=20                   (maximum marks of quiz1..quiz4, assignment1..assignment4, mid, final)
+ *
+ * The file is parsed into an immutable GradingConfig held in an AtomicReference, so reads
+ * never lock. DataDirectoryWatcher flags the file when it changes, whoever wrote it, and the
+ * new snapshot is swapped in and announced to listeners, e.g. so open dashboards regrade.
+ */
 public class ConfigManager {
 
+    public interface ConfigListener {
+        // Called on a background thread; Swing listeners should hand off to the event thread.
+        void configChanged(GradingConfig config);
+    }
+
     private static final String CONFIG_FILE_PATH = "data/grading_policy.txt";
-    public static void saveGradingPolicy(String policy) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(CONFIG_FILE_PATH))) {
-            writer.println(policy);
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static final String SUBJECT_POLICY_PREFIX = "policy.";
+    private static final String WEIGHT_PREFIX = "weight.";
+    private static final String MAX_MARKS_PREFIX = "max.";
+    // Without change notification the file is checked at most this often.
+    private static final long UNWATCHED_CHECK_NANOS = 1_000_000_000L;
+
+    private static final AtomicReference<LoadedConfig> current = new AtomicReference<>();
+    private static final CopyOnWriteArrayList<ConfigListener> listeners = new CopyOnWriteArrayList<>();
+    private static volatile boolean stale = true;
+    private static volatile boolean watched;
+    private static boolean listening;
+    private static ExecutorService reloader;
+
+    public static void addListener(ConfigListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(ConfigListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** The current configuration; lock-free unless the file changed since the last read. */
+    public static GradingConfig getConfig() {
+        LoadedConfig loaded = current.get();
+        if (loaded == null || stale) {
+            loaded = refresh(true);
+        } else if (!watched && System.nanoTime() - loaded.checkedAt > UNWATCHED_CHECK_NANOS) {
+            loaded = refresh(false);
         }
+        return loaded.config;
+    }
+
+    public static void saveGradingPolicy(String policy) {
+        saveLines(policy, null, null);
     }
 
     public static String loadGradingPolicy() {
+        return getConfig().getGlobalPolicy().getName();
+    }
+
+    /** Overrides the policy for one subject; a null policy removes the override. */
+    public static void saveSubjectGradingPolicy(String subjectCode, String policy) {
+        saveLines(null, MarksRepository.normalizeSubject(subjectCode), policy);
+    }
+
+    /** The policy that applies to the subject, which is the global one unless it is overridden. */
+    public static GradingPolicy getGradingPolicy(String subjectCode) {
+        return getConfig().getPolicy(subjectCode);
+    }
+
+    public static boolean hasSubjectGradingPolicy(String subjectCode) {
+        return getConfig().hasSubjectPolicy(subjectCode);
+    }
+
+    // Unless forced, the file is only re-read when its length or modification time moved.
+    private static LoadedConfig refresh(boolean force) {
+        LoadedConfig previous;
+        LoadedConfig loaded;
+        synchronized (ConfigManager.class) {
+            startWatching();
+            previous = current.get();
+            // Cleared before the file is looked at, so a change landing during the read flags it again.
+            stale = false;
+            File configFile = new File(CONFIG_FILE_PATH);
+            long length = configFile.length();
+            long lastModified = configFile.lastModified();
+            if (!force && previous != null && previous.length == length && previous.lastModified == lastModified) {
+                loaded = new LoadedConfig(previous.config, length, lastModified);
+            } else {
+                loaded = new LoadedConfig(read(configFile), length, lastModified);
+            }
+            current.set(loaded);
+        }
+        if (previous != null && !loaded.config.hasSameSettings(previous.config)) {
+            for (ConfigListener listener : listeners) {
+                listener.configChanged(loaded.config);
+            }
+        }
+        return loaded;
+    }
+
+    // Reloads in the background on a change, so listeners hear about it even when nothing reads the configuration.
+    private static void startWatching() {
+        if (listening) return;
+        listening = true;
+        final Path configPath = new File(CONFIG_FILE_PATH).getAbsoluteFile().toPath().normalize();
+        reloader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "config-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        DataDirectoryWatcher.addListener(changed -> {
+            if (changed == null || changed.equals(configPath)) {
+                stale = true;
+                reloader.execute(() -> refresh(true));
+            }
+        });
+        watched = DataDirectoryWatcher.watch(configPath.getParent());
+    }
+
+    private static GradingConfig read(File configFile) {
+        if (!configFile.exists()) return GradingConfig.defaults();
+        GradingPolicy globalPolicy = GradingPolicy.ABSOLUTE;
+        HashMap<String, GradingPolicy> subjectPolicies = new HashMap<>();
+        double quizWeight = WeightedScorer.QUIZ_WEIGHT;
+        double assignmentWeight = WeightedScorer.ASSIGNMENT_WEIGHT;
+        double midWeight = WeightedScorer.MID_WEIGHT;
+        double finalWeight = WeightedScorer.FINAL_WEIGHT;
+        int[] maxMarks = GradingConfig.defaultMaxMarks();
+
+        ArrayList<String> lines = readLines(configFile);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty()) continue;
+            try {
+                if (i == 0) {
+                    globalPolicy = GradingPolicy.parse(line);
+                    continue;
+                }
+                String subjectKey = subjectKeyOf(line);
+                int equals = line.indexOf('=');
+                String name = equals < 0 ? line : line.substring(0, equals).trim().toLowerCase();
+                String value = equals < 0 ? "" : line.substring(equals + 1).trim();
+                if (subjectKey != null) {
+                    subjectPolicies.put(subjectKey, GradingPolicy.parse(value));
+                } else if (name.startsWith(WEIGHT_PREFIX)) {
+                    double weight = Double.parseDouble(value);
+                    if (!(weight >= 0 && weight <= 1)) throw new IllegalArgumentException("Weights must be between 0 and 1");
+                    switch (name.substring(WEIGHT_PREFIX.length())) {
+                        case "quiz": quizWeight = weight; break;
+                        case "assignment": assignmentWeight = weight; break;
+                        case "mid": midWeight = weight; break;
+                        case "final": finalWeight = weight; break;
+                        default: throw new IllegalArgumentException("Unknown weight " + name);
+                    }
+                } else if (name.startsWith(MAX_MARKS_PREFIX)) {
+                    Assessment assessment = Assessment.fromKey(name.substring(MAX_MARKS_PREFIX.length()));
+                    if (assessment == null) throw new IllegalArgumentException("Unknown assessment " + name);
+                    int max = Integer.parseInt(value);
+                    if (max <= 0) throw new IllegalArgumentException("Maximum marks must be positive");
+                    maxMarks[assessment.ordinal()] = max;
+                } else {
+                    throw new IllegalArgumentException("Unknown setting " + name);
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println("Ignoring grading policy line " + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        return new GradingConfig(globalPolicy, subjectPolicies, quizWeight, assignmentWeight, midWeight, finalWeight, maxMarks);
+    }
+
+    // Rewrites the file with the global line and/or one subject line replaced, keeping every other line as it was.
+    private static synchronized void saveLines(String globalPolicy, String subjectKey, String subjectPolicy) {
         File configFile = new File(CONFIG_FILE_PATH);
-        if (!configFile.exists()) {
-            return "absolute"; 
+        ArrayList<String> lines = readLines(configFile);
+        if (lines.isEmpty()) lines.add("absolute");
+        if (globalPolicy != null) {
+            lines.set(0, GradingPolicy.parse(globalPolicy).getName());
+        }
+        if (subjectKey != null) {
+            String entry = subjectPolicy == null ? null : SUBJECT_POLICY_PREFIX + subjectKey + "=" + GradingPolicy.parse(subjectPolicy).getName();
+            boolean replaced = false;
+            for (int i = lines.size() - 1; i >= 1; i--) {
+                if (subjectKey.equals(subjectKeyOf(lines.get(i)))) {
+                    if (entry == null || replaced) {
+                        lines.remove(i);
+                    } else {
+                        lines.set(i, entry);
+                        replaced = true;
+                    }
+                }
+            }
+            if (entry != null && !replaced) lines.add(entry);
         }
+        try (PrintWriter writer = new PrintWriter(new FileWriter(configFile))) {
+            for (String line : lines) {
+                writer.println(line);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        // The watcher would notice too, but this process should see its own change right away.
+        refresh(true);
+    }
+
+    private static ArrayList<String> readLines(File configFile) {
+        ArrayList<String> lines = new ArrayList<>();
+        if (!configFile.exists()) return lines;
         try (BufferedReader reader = new BufferedReader(new FileReader(configFile))) {
-            String policy = reader.readLine();
-            if (policy != null && !policy.trim().isEmpty()) {
-                return policy.trim();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return "absolute"; 
+        return lines;
+    }
+
+    // "policy.CY1121=absolute" -> "CY1121"; null for any other line.
+    private static String subjectKeyOf(String line) {
+        String trimmed = line.trim();
+        int equals = trimmed.indexOf('=');
+        if (!trimmed.startsWith(SUBJECT_POLICY_PREFIX) || equals <= SUBJECT_POLICY_PREFIX.length()) return null;
+        return MarksRepository.normalizeSubject(trimmed.substring(SUBJECT_POLICY_PREFIX.length(), equals));
+    }
+
+    private static class LoadedConfig {
+        final GradingConfig config;
+        final long length;
+        final long lastModified;
+        final long checkedAt = System.nanoTime();
+
+        LoadedConfig(GradingConfig config, long length, long lastModified) {
+            this.config = config;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,230 @@
+package util;
+
+import model.Subject;
+import model.User;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Process-wide cache of parsed users, subjects, marks and attendance, so reopening a
+ * dashboard hits memory instead of re-reading data/. Entries are flagged stale by
+ * DataDirectoryWatcher (which also sees writes from the Python recognizer and other
+ * instances) and by CSVManager after its own writes, then refreshed on next access:
+ * appends to the marks journal or the attendance log are parsed incrementally, anything
+ * else reloads the file.
+ *
+ * Users and subjects are returned as copies because the management frames edit them.
+ * A marks repository is shared and must be treated as read-only; a refresh never changes one
+ * that was handed out, it replays into a copy and publishes that. The attendance store
+ * returns copies.
+ */
+public class DataCache {
+
+    private static final HashMap<Path, Entry> entries = new HashMap<>();
+    private static boolean listening;
+
+    // Each entry refreshes under its own monitor, so a slow marks shard never holds up a users lookup.
+    public static ArrayList<User> getUsers(String filepath) throws IOException {
+        UsersEntry entry = (UsersEntry) entry(filepath, UsersEntry::new);
+        synchronized (entry) {
+            return new ArrayList<>(entry.users);
+        }
+    }
+
+    public static ArrayList<Subject> getSubjects(String filepath) throws IOException {
+        SubjectsEntry entry = (SubjectsEntry) entry(filepath, SubjectsEntry::new);
+        ArrayList<Subject> copies = new ArrayList<>();
+        synchronized (entry) {
+            for (Subject subject : entry.subjects) {
+                copies.add(new Subject(subject.getCode(), subject.getName(), subject.getTeacherUsername()));
+            }
+        }
+        return copies;
+    }
+
+    // filepath is a single marks CSV, e.g. one subject shard.
+    public static MarksRepository getMarks(String filepath) throws IOException {
+        return ((MarksEntry) entry(filepath, MarksEntry::new)).repository;
+    }
+
+    public static MarksRepository getSubjectMarks(String marksPath, String subjectCode) throws IOException {
+        MarksShards.migrateIfNeeded(marksPath);
+        return getMarks(MarksShards.shardPathFor(marksPath, subjectCode));
+    }
+
+    public static AttendanceStore getAttendanceStore(String filepath) throws IOException {
+        return ((AttendanceEntry) entry(filepath, AttendanceEntry::new)).store;
+    }
+
+    /** Flags every entry that depends on the file, e.g. after CSVManager wrote to it. */
+    public static void invalidate(String filepath) {
+        fileChanged(pathOf(filepath));
+    }
+
+    private static void fileChanged(Path changed) {
+        synchronized (entries) {
+            for (Entry entry : entries.values()) {
+                if (changed == null || entry.dependsOn(changed)) {
+                    entry.stale = true;
+                }
+            }
+        }
+    }
+
+    private interface EntryFactory {
+        Entry create(Path file);
+    }
+
+    private static Entry entry(String filepath, EntryFactory factory) throws IOException {
+        Path file = pathOf(filepath);
+        Entry entry;
+        synchronized (entries) {
+            if (!listening) {
+                DataDirectoryWatcher.addListener(DataCache::fileChanged);
+                listening = true;
+            }
+            entry = entries.get(file);
+            if (entry == null) {
+                entry = factory.create(file);
+                entry.watched = DataDirectoryWatcher.watch(file.getParent());
+                entries.put(file, entry);
+            }
+        }
+        // Without change notification, every access re-checks the file; refresh() is cheap when nothing changed.
+        synchronized (entry) {
+            if (entry.stale || !entry.watched) {
+                entry.stale = false;
+                try {
+                    entry.refresh();
+                } catch (IOException e) {
+                    entry.stale = true;
+                    throw e;
+                }
+            }
+        }
+        return entry;
+    }
+
+    private static Path pathOf(String filepath) {
+        return new File(filepath).getAbsoluteFile().toPath().normalize();
+    }
+
+    private abstract static class Entry {
+        final Path file;
+        volatile boolean stale = true;
+        boolean watched;
+        long length = -1;
+        long lastModified = -1;
+
+        Entry(Path file) {
+            this.file = file;
+        }
+
+        boolean dependsOn(Path changed) {
+            return file.equals(changed);
+        }
+
+        // True (and remembers the new state) when the file's length or modification time moved.
+        boolean fileChangedSinceLastCheck() {
+            File f = file.toFile();
+            long newLength = f.length();
+            long newLastModified = f.lastModified();
+            boolean changed = newLength != length || newLastModified != lastModified;
+            length = newLength;
+            lastModified = newLastModified;
+            return changed;
+        }
+
+        abstract void refresh() throws IOException;
+    }
+
+    private static class UsersEntry extends Entry {
+        ArrayList<User> users = new ArrayList<>();
+
+        UsersEntry(Path file) {
+            super(file);
+        }
+
+        @Override
+        void refresh() throws IOException {
+            if (fileChangedSinceLastCheck()) {
+                users = CSVManager.loadUsers(file.toString());
+            }
+        }
+    }
+
+    private static class SubjectsEntry extends Entry {
+        ArrayList<Subject> subjects = new ArrayList<>();
+
+        SubjectsEntry(Path file) {
+            super(file);
+        }
+
+        @Override
+        void refresh() throws IOException {
+            if (fileChangedSinceLastCheck()) {
+                subjects = CSVManager.loadSubjects(file.toString());
+            }
+        }
+    }
+
+    private static class MarksEntry extends Entry {
+        final Path journal;
+        // Replaced, never modified, once published: getMarks() reads it without the entry's monitor.
+        volatile MarksRepository repository;
+        long journalOffset;
+
+        MarksEntry(Path file) {
+            super(file);
+            this.journal = MarksJournal.journalFileFor(file.toString()).toPath();
+        }
+
+        @Override
+        boolean dependsOn(Path changed) {
+            return super.dependsOn(changed) || journal.equals(changed);
+        }
+
+        // A journal that only grew is replayed, into a copy, from where the last refresh stopped; a rewritten CSV means a full reload.
+        @Override
+        @SuppressWarnings("try")
+        void refresh() throws IOException {
+            String csvPath = file.toString();
+            try (DataFileLock lock = DataFileLock.acquireShared(csvPath)) {
+                boolean csvChanged = fileChangedSinceLastCheck();
+                long journalLength = journal.toFile().length();
+                MarksRepository next;
+                if (repository == null || csvChanged || journalLength < journalOffset) {
+                    // A shard with only enrollments journaled so far has no CSV yet.
+                    next = file.toFile().exists() ? new MarksRepository(CSVManager.parseMarksFile(csvPath)) : new MarksRepository();
+                    fileChangedSinceLastCheck();
+                    journalOffset = 0;
+                } else if (journalLength > journalOffset) {
+                    next = repository.copy();
+                } else {
+                    return;
+                }
+                journalOffset = MarksJournal.replay(csvPath, next, journalOffset);
+                repository = next;
+            }
+        }
+    }
+
+    private static class AttendanceEntry extends Entry {
+        final AttendanceStore store;
+
+        AttendanceEntry(Path file) {
+            super(file);
+            this.store = new AttendanceStore(file.toFile());
+        }
+
+        // The attendance log is append-only: the store parses only what was added since the last refresh.
+        @Override
+        void refresh() throws IOException {
+            store.refresh();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Watches data directories with a WatchService and tells listeners which files were created,
+ * modified or deleted, whether by this process, the Python recognizer or another instance.
+ * Listeners run on the watcher thread and should only flag state, not reload.
+ */
+public class DataDirectoryWatcher {
+
+    public interface FileChangeListener {
+        // file is null when events were lost and everything under the watched directories may have changed.
+        void fileChanged(Path file);
+    }
+
+    private static final CopyOnWriteArrayList<FileChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private static final HashMap<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private static WatchService watchService;
+    private static boolean unavailable;
+
+    public static void addListener(FileChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(FileChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts watching the directory if it is not watched yet. Returns false when change
+     * notification is not available, in which case callers must check files themselves.
+     */
+    public static synchronized boolean watch(Path directory) {
+        if (unavailable) return false;
+        Path normalized = directory.toAbsolutePath().normalize();
+        if (watchedDirectories.containsValue(normalized)) return true;
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread thread = new Thread(DataDirectoryWatcher::pollEvents, "data-directory-watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            WatchKey key = normalized.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirectories.put(key, normalized);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("File change notification unavailable for " + normalized + ": " + e.getMessage());
+            if (watchService == null) unavailable = true;
+            return false;
+        }
+    }
+
+    private static void pollEvents() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory;
+            synchronized (DataDirectoryWatcher.class) {
+                directory = watchedDirectories.get(key);
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                Path changed = null;
+                if (event.kind() != StandardWatchEventKinds.OVERFLOW && directory != null) {
+                    changed = directory.resolve((Path) event.context());
+                }
+                for (FileChangeListener listener : listeners) {
+                    listener.fileChanged(changed);
+                }
+            }
+            if (!key.reset()) {
+                synchronized (DataDirectoryWatcher.class) {
+                    watchedDirectories.remove(key);
+                }
+            }
+        }
+    }
+}
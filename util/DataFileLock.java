@@ -0,0 +1,167 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Lock on one data file together with the files kept beside it: a marks CSV with its journal
+ * and snapshot, or the attendance log path with its monthly partitions. Shared for reads and
+ * exclusive for appends, compaction and replacement. Within the process it is one of a fixed
+ * set of read/write locks striped by path, so different files are locked independently;
+ * across processes it is a FileChannel lock on a sibling .lock file
+ * (data/marks/CY1121.csv -> data/marks/CY1121.lock). Reentrant for the owning thread, and an
+ * exclusive holder may also take the shared lock, but a shared holder cannot upgrade.
+ *
+ *   try (DataFileLock lock = DataFileLock.acquireShared(path)) { ... }
+ */
+public class DataFileLock implements AutoCloseable {
+
+    private static final int STRIPES = 64;
+    private static final long MAX_BACKOFF_MILLIS = 50;
+
+    private static final ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[STRIPES];
+    private static final ConcurrentHashMap<String, ProcessLock> processLocks = new ConcurrentHashMap<>();
+    private static final ThreadLocal<HashMap<String, DataFileLock>> heldByThread = ThreadLocal.withInitial(HashMap::new);
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    private final String key;
+    private final Lock stripeLock;
+    private final ProcessLock processLock;
+    private int holds = 1;
+
+    private DataFileLock(String key, Lock stripeLock, ProcessLock processLock) {
+        this.key = key;
+        this.stripeLock = stripeLock;
+        this.processLock = processLock;
+    }
+
+    public static File lockFileFor(String path) {
+        String base = path.endsWith(".csv") ? path.substring(0, path.length() - 4) : path;
+        return new File(base + ".lock");
+    }
+
+    /** Blocks until this thread may write path: no other thread or process holds it in any mode. */
+    public static DataFileLock acquire(String path) throws IOException {
+        return acquire(path, false);
+    }
+
+    /** Blocks until this thread may read path: other readers are admitted, writers are not. */
+    public static DataFileLock acquireShared(String path) throws IOException {
+        return acquire(path, true);
+    }
+
+    private static DataFileLock acquire(String path, boolean shared) throws IOException {
+        String key = new File(path).getAbsoluteFile().toPath().normalize().toString();
+        HashMap<String, DataFileLock> held = heldByThread.get();
+        DataFileLock lock = held.get(key);
+        if (lock != null) {
+            if (!shared && lock.processLock.shared) {
+                throw new IllegalStateException("Cannot upgrade a shared lock on " + path);
+            }
+            lock.holds++;
+            return lock;
+        }
+
+        ReentrantReadWriteLock stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        if (!shared && !stripe.isWriteLockedByCurrentThread() && stripe.getReadHoldCount() > 0) {
+            // Another path on the same stripe is read-locked by this thread; waiting for the write lock would never return.
+            throw new IllegalStateException("Cannot write-lock " + path + " while holding a shared lock on the same stripe");
+        }
+        // The in-process lock comes first: it keeps two threads of this JVM from asking the OS for conflicting locks on one file.
+        Lock stripeLock = shared ? stripe.readLock() : stripe.writeLock();
+        stripeLock.lock();
+        ProcessLock processLock = processLocks.computeIfAbsent(key, k -> new ProcessLock(lockFileFor(path)));
+        try {
+            processLock.acquire(shared);
+        } catch (IOException | RuntimeException e) {
+            stripeLock.unlock();
+            throw e;
+        }
+        lock = new DataFileLock(key, stripeLock, processLock);
+        held.put(key, lock);
+        return lock;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (--holds > 0) return;
+        heldByThread.get().remove(key);
+        try {
+            processLock.release();
+        } finally {
+            stripeLock.unlock();
+        }
+    }
+
+    /**
+     * The OS lock on one .lock file, shared by every thread of this process that holds the path.
+     * OS file locks belong to the whole process, so they are taken once and counted here.
+     */
+    private static class ProcessLock {
+        private final File lockFile;
+        private FileChannel channel;
+        private FileLock fileLock;
+        private boolean shared;
+        private int count;
+
+        ProcessLock(File lockFile) {
+            this.lockFile = lockFile;
+        }
+
+        // The stripe lock guarantees that while count > 0 every caller asks for the mode already held.
+        synchronized void acquire(boolean shared) throws IOException {
+            if (count > 0) {
+                count++;
+                return;
+            }
+            File parent = lockFile.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.isDirectory()) parent.mkdirs();
+            FileChannel opened = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                // Polled rather than blocking: Linux reports a deadlock whenever two processes each hold one lock file and
+                // wait for the other's, even though different threads are involved and the waits would resolve.
+                long backoff = 1;
+                FileLock acquired;
+                while ((acquired = opened.tryLock(0, Long.MAX_VALUE, shared)) == null) {
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                }
+                channel = opened;
+                fileLock = acquired;
+                this.shared = shared;
+                count = 1;
+            } catch (InterruptedException e) {
+                opened.close();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + lockFile);
+            } catch (IOException | RuntimeException e) {
+                opened.close();
+                throw e;
+            }
+        }
+
+        synchronized void release() throws IOException {
+            if (--count > 0) return;
+            try {
+                fileLock.release();
+            } finally {
+                channel.close();
+                channel = null;
+                fileLock = null;
+            }
+        }
+    }
+}
@@ -5,17 +5,7 @@ import java.util.ArrayList;
 public class GradeCalculator {
 
     public static String calculateAbsolute(double totalScore) {
-        if (totalScore >= 86) return "A";
-        if(totalScore >= 82) return "A-";
-        if (totalScore >= 78) return "B+";
-        if (totalScore >= 74) return "B";
-        if (totalScore >= 70) return "B-";
-        if (totalScore >= 66) return "C+";
-        if (totalScore >= 62) return "C";
-        if (totalScore >= 58) return "C-";
-        if (totalScore >= 54) return "D+";
-        if (totalScore >= 50) return "D";
-        return "F";
+        return GradingPolicy.ABSOLUTE.scaleFor(null).grade(totalScore);
     }
 
     public static String calculateRelative(double studentTotal, ArrayList<Double> allScores) {
@@ -34,17 +24,16 @@ public class GradeCalculator {
             standardDeviation += Math.pow(score - mean, 2);
         }
         double stdDev = Math.sqrt(standardDeviation / allScores.size());
-        if (studentTotal >= mean + 1.5 * stdDev) return "A";
-        if (studentTotal >= mean + 1.2 * stdDev) return "A-";
-        if (studentTotal >= mean + 0.9 * stdDev) return "B+";
-        if (studentTotal >= mean + 0.6 * stdDev) return "B";
-        if (studentTotal >= mean + 0.3 * stdDev) return "B-";
-        if (studentTotal >= mean + 0.0 * stdDev) return "C+"; 
-        if (studentTotal >= mean - 0.4 * stdDev) return "C";
-        if (studentTotal >= mean - 0.8 * stdDev) return "C-";
-        if (studentTotal >= mean - 1.2 * stdDev) return "D+";
-        if (studentTotal >= mean - 1.6 * stdDev) return "D";
-
-        return "F";
+        return RelativeGradingPolicy.scale(mean, stdDev).grade(studentTotal);
     }
-}
\ No newline at end of file
+
+    // O(1): the class mean and standard deviation come from the maintained statistics.
+    public static String calculateRelative(double studentTotal, ClassStatistics classStatistics) {
+        return GradingPolicy.RELATIVE.scaleFor(classStatistics).grade(studentTotal);
+    }
+
+    /** Grades one student under the policy; classStatistics may be null for policies that don't use them. */
+    public static String calculate(GradingPolicy policy, double studentTotal, ClassStatistics classStatistics) {
+        return policy.scaleFor(classStatistics).grade(studentTotal);
+    }
+}
@@ -0,0 +1,90 @@
+package util;
+
+/**
+ * A grading scale compiled to sorted boundaries: cutoffs[i] is the lowest score that earns
+ * grades[i], ascending. A score is graded by binary search, or by a table indexed by the whole
+ * score when every cutoff is a whole number from 0 to 100, as the absolute scales are.
+ */
+public class GradeScale {
+
+    private final double[] cutoffs;
+    private final String[] grades;
+    private final String belowAll;
+    private final String[] byWholeScore;
+
+    /** belowAll is the grade for scores under every cutoff. */
+    public GradeScale(double[] cutoffs, String[] grades, String belowAll) {
+        if (cutoffs.length != grades.length) {
+            throw new IllegalArgumentException("Expected one grade per cutoff");
+        }
+        for (int i = 1; i < cutoffs.length; i++) {
+            if (cutoffs[i] < cutoffs[i - 1]) {
+                throw new IllegalArgumentException("Cutoffs must be in ascending order");
+            }
+        }
+        this.cutoffs = cutoffs.clone();
+        this.grades = grades.clone();
+        this.belowAll = belowAll;
+        this.byWholeScore = wholeScoreTable();
+    }
+
+    public String grade(double score) {
+        // Below 0 a cutoff of 0 would be misread from the table, so those few scores take the search.
+        if (byWholeScore != null && score >= 0) {
+            return byWholeScore[score >= 100 ? 100 : (int) score];
+        }
+        return search(score);
+    }
+
+    public int size() {
+        return cutoffs.length;
+    }
+
+    public double getCutoff(int index) {
+        return cutoffs[index];
+    }
+
+    public String getGrade(int index) {
+        return grades[index];
+    }
+
+    public String getLowestGrade() {
+        return belowAll;
+    }
+
+    /** The lowest score that earns the grade (case-insensitive), or NaN if the scale has no such grade. */
+    public double minimumFor(String grade) {
+        String wanted = grade.trim();
+        for (int i = 0; i < grades.length; i++) {
+            if (grades[i].equalsIgnoreCase(wanted)) return cutoffs[i];
+        }
+        return belowAll.equalsIgnoreCase(wanted) ? Double.NEGATIVE_INFINITY : Double.NaN;
+    }
+
+    // The grade of the last cutoff <= score; a NaN score is below all of them.
+    private String search(double score) {
+        int low = 0;
+        int high = cutoffs.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cutoffs[mid] <= score) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low == 0 ? belowAll : grades[low - 1];
+    }
+
+    // With whole-number cutoffs every score in [n, n + 1) gets the same grade as n.
+    private String[] wholeScoreTable() {
+        for (double cutoff : cutoffs) {
+            if (cutoff != Math.rint(cutoff) || cutoff < 0 || cutoff > 100) return null;
+        }
+        String[] table = new String[101];
+        for (int score = 0; score <= 100; score++) {
+            table[score] = search(score);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,187 @@
+package util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Grades every student in every subject in one run and writes the gradebook CSV
+ * (Subject,Username,WeightedScore,Grade). Work is partitioned by subject shard on a ForkJoin
+ * pool: each shard is loaded as a MarkTable, scored with primitive loops, and graded under
+ * its subject's grading policy. Only the final write is sequential.
+ */
+public class GradebookEngine {
+
+    private static final String GRADEBOOK_HEADER = "Subject,Username,WeightedScore,Grade";
+
+    /** Row counts and per-phase wall-clock times of one run. */
+    public static class Report {
+        private int subjects;
+        private int rows;
+        private long loadMillis;
+        private long gradeMillis;
+        private long writeMillis;
+
+        public int getSubjects() { return subjects; }
+        public int getRows() { return rows; }
+        public long getLoadMillis() { return loadMillis; }
+        public long getGradeMillis() { return gradeMillis; }
+        public long getWriteMillis() { return writeMillis; }
+
+        public long getTotalMillis() {
+            return loadMillis + gradeMillis + writeMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Graded " + rows + " students in " + subjects + " subject(s) in " + getTotalMillis() + " ms"
+                    + " (load " + loadMillis + " ms, grade " + gradeMillis + " ms, write " + writeMillis + " ms)";
+        }
+    }
+
+    // One shard's work; each phase fills in the next field.
+    private static class SubjectPartition {
+        final String shardPath;
+        MarkTable table;
+        StringBuilder output;
+        int rows;
+
+        SubjectPartition(String shardPath) {
+            this.shardPath = shardPath;
+        }
+    }
+
+    /** Grades each subject under its own policy from ConfigManager. */
+    public static Report run(String marksPath, String gradebookPath) throws IOException {
+        Report report = new Report();
+        final ArrayList<SubjectPartition> partitions = new ArrayList<>();
+        for (String shardPath : MarksShards.shardPaths(marksPath)) {
+            partitions.add(new SubjectPartition(shardPath));
+        }
+        report.subjects = partitions.size();
+
+        long start = System.nanoTime();
+        forEachPartition(partitions, partition -> partition.table = CSVManager.loadMarkTableFile(partition.shardPath));
+        long loaded = System.nanoTime();
+        forEachPartition(partitions, GradebookEngine::grade);
+        long graded = System.nanoTime();
+
+        File target = new File(gradebookPath);
+        File temp = new File(gradebookPath + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp);
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            writer.write(GRADEBOOK_HEADER);
+            writer.write('\n');
+            for (SubjectPartition partition : partitions) {
+                writer.append(partition.output);
+                report.rows += partition.rows;
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        long written = System.nanoTime();
+
+        report.loadMillis = (loaded - start) / 1_000_000;
+        report.gradeMillis = (graded - loaded) / 1_000_000;
+        report.writeMillis = (written - graded) / 1_000_000;
+        return report;
+    }
+
+    private interface PartitionStep {
+        void apply(SubjectPartition partition) throws IOException;
+    }
+
+    // Runs the step for every partition as one ForkJoin task each and waits for all of them.
+    private static void forEachPartition(ArrayList<SubjectPartition> partitions, final PartitionStep step) throws IOException {
+        ArrayList<RecursiveAction> tasks = new ArrayList<>();
+        for (final SubjectPartition partition : partitions) {
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    try {
+                        step.apply(partition);
+                    } catch (IOException e) {
+                        throw new GradebookException(e);
+                    }
+                }
+            });
+        }
+        try {
+            ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } catch (GradebookException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static class GradebookException extends RuntimeException {
+        GradebookException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    // A shard normally holds one subject, but codes that sanitize to the same file name share one.
+    private static void grade(SubjectPartition partition) {
+        MarkTable table = partition.table;
+        StringBuilder output = new StringBuilder(table.size() * 32);
+        for (int subjectId = 0; subjectId < table.getSubjectCount(); subjectId++) {
+            int[] rows = table.getRowsForSubject(subjectId);
+            double[] totals = table.weightedTotals(subjectId);
+            GradingPolicy policy = ConfigManager.getGradingPolicy(table.getSubjectCode(subjectId));
+            ClassStatistics classStatistics = null;
+            if (policy.usesClassStatistics()) {
+                classStatistics = new ClassStatistics();
+                for (double total : totals) {
+                    classStatistics.add(total);
+                }
+            }
+            // Compiled once per subject; each student is then a table lookup or binary search.
+            GradeScale scale = policy.scaleFor(classStatistics);
+            for (int i = 0; i < rows.length; i++) {
+                String grade = scale.grade(totals[i]);
+                output.append(table.getSubject(rows[i])).append(',').append(table.getUsername(rows[i])).append(',');
+                appendScore(output, totals[i]);
+                output.append(',').append(grade).append('\n');
+            }
+            partition.rows += rows.length;
+        }
+        partition.output = output;
+        partition.table = null;
+    }
+
+    // Two decimals, rounded half up, without going through String.format for every row.
+    private static void appendScore(StringBuilder output, double score) {
+        long hundredths = Math.round(score * 100);
+        if (hundredths < 0) {
+            output.append('-');
+            hundredths = -hundredths;
+        }
+        long fraction = hundredths % 100;
+        output.append(hundredths / 100).append('.');
+        if (fraction < 10) output.append('0');
+        output.append(fraction);
+    }
+}
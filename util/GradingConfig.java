@@ -0,0 +1,105 @@
+package util;
+
+import model.Assessment;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One immutable reading of data/grading_policy.txt: the grading policies, the weight of each
+ * assessment group and the maximum marks of each assessment. ConfigManager swaps in a new
+ * instance when the file changes, so a reader holding one always sees a consistent set.
+ */
+public final class GradingConfig {
+
+    private final GradingPolicy globalPolicy;
+    private final Map<String, GradingPolicy> subjectPolicies;
+    private final double quizWeight;
+    private final double assignmentWeight;
+    private final double midWeight;
+    private final double finalWeight;
+    private final int[] maxMarks;
+    private final double quizTotal;
+    private final double assignmentTotal;
+
+    GradingConfig(GradingPolicy globalPolicy, HashMap<String, GradingPolicy> subjectPolicies,
+                  double quizWeight, double assignmentWeight, double midWeight, double finalWeight, int[] maxMarks) {
+        this.globalPolicy = globalPolicy;
+        this.subjectPolicies = Collections.unmodifiableMap(new HashMap<>(subjectPolicies));
+        this.quizWeight = quizWeight;
+        this.assignmentWeight = assignmentWeight;
+        this.midWeight = midWeight;
+        this.finalWeight = finalWeight;
+        this.maxMarks = maxMarks.clone();
+        this.quizTotal = maxMarks[Assessment.QUIZ1.ordinal()] + maxMarks[Assessment.QUIZ2.ordinal()]
+                + maxMarks[Assessment.QUIZ3.ordinal()] + maxMarks[Assessment.QUIZ4.ordinal()];
+        this.assignmentTotal = maxMarks[Assessment.ASSIGNMENT1.ordinal()] + maxMarks[Assessment.ASSIGNMENT2.ordinal()]
+                + maxMarks[Assessment.ASSIGNMENT3.ordinal()] + maxMarks[Assessment.ASSIGNMENT4.ordinal()];
+    }
+
+    /** Absolute grading with the built-in weights and maximum marks, as when there is no file. */
+    static GradingConfig defaults() {
+        return new GradingConfig(GradingPolicy.ABSOLUTE, new HashMap<String, GradingPolicy>(),
+                WeightedScorer.QUIZ_WEIGHT, WeightedScorer.ASSIGNMENT_WEIGHT, WeightedScorer.MID_WEIGHT, WeightedScorer.FINAL_WEIGHT,
+                defaultMaxMarks());
+    }
+
+    static int[] defaultMaxMarks() {
+        Assessment[] assessments = Assessment.values();
+        int[] maxMarks = new int[assessments.length];
+        for (Assessment assessment : assessments) {
+            maxMarks[assessment.ordinal()] = assessment.getMaxMarks();
+        }
+        return maxMarks;
+    }
+
+    public GradingPolicy getGlobalPolicy() {
+        return globalPolicy;
+    }
+
+    /** The policy that applies to the subject, which is the global one unless it is overridden. */
+    public GradingPolicy getPolicy(String subjectCode) {
+        GradingPolicy policy = subjectCode == null ? null : subjectPolicies.get(MarksRepository.normalizeSubject(subjectCode));
+        return policy != null ? policy : globalPolicy;
+    }
+
+    public boolean hasSubjectPolicy(String subjectCode) {
+        return subjectPolicies.containsKey(MarksRepository.normalizeSubject(subjectCode));
+    }
+
+    public double getQuizWeight() { return quizWeight; }
+    public double getAssignmentWeight() { return assignmentWeight; }
+    public double getMidWeight() { return midWeight; }
+    public double getFinalWeight() { return finalWeight; }
+
+    public int getMaxMarks(Assessment assessment) {
+        return maxMarks[assessment.ordinal()];
+    }
+
+    /** Maximum of the four quizzes together. */
+    public double getQuizTotal() { return quizTotal; }
+
+    /** Maximum of the four assignments together. */
+    public double getAssignmentTotal() { return assignmentTotal; }
+
+    /** True when both configurations turn the same marks into the same weighted scores. */
+    public boolean hasSameScoring(GradingConfig other) {
+        return other != null && quizWeight == other.quizWeight && assignmentWeight == other.assignmentWeight
+                && midWeight == other.midWeight && finalWeight == other.finalWeight
+                && Arrays.equals(maxMarks, other.maxMarks);
+    }
+
+    /** True when nothing a reader can observe differs. */
+    public boolean hasSameSettings(GradingConfig other) {
+        if (!hasSameScoring(other) || !globalPolicy.getName().equals(other.globalPolicy.getName())
+                || !subjectPolicies.keySet().equals(other.subjectPolicies.keySet())) {
+            return false;
+        }
+        for (Map.Entry<String, GradingPolicy> entry : subjectPolicies.entrySet()) {
+            if (!entry.getValue().getName().equals(other.subjectPolicies.get(entry.getKey()).getName())) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,36 @@
+package util;
+
+/**
+ * How weighted scores become letter grades. A policy compiles to a GradeScale once per class,
+ * so grading each student is a table lookup or binary search. Policies are written in
+ * grading_policy.txt as "absolute", "relative" or "custom:A=90,B=80,C=70,D=60".
+ */
+public interface GradingPolicy {
+
+    GradingPolicy ABSOLUTE = new ScaleGradingPolicy("absolute", "Absolute",
+            new double[]{50, 54, 58, 62, 66, 70, 74, 78, 82, 86},
+            new String[]{"D", "D+", "C-", "C", "C+", "B-", "B", "B+", "A-", "A"});
+
+    GradingPolicy RELATIVE = new RelativeGradingPolicy();
+
+    /** The text this policy is saved as. */
+    String getName();
+
+    /** Short name for display, e.g. "Relative". */
+    String getLabel();
+
+    boolean usesClassStatistics();
+
+    /** classStatistics may be null when the policy does not use them. */
+    GradeScale scaleFor(ClassStatistics classStatistics);
+
+    static GradingPolicy parse(String spec) {
+        String trimmed = spec == null ? "" : spec.trim();
+        if (trimmed.isEmpty() || trimmed.equalsIgnoreCase(ABSOLUTE.getName())) return ABSOLUTE;
+        if (trimmed.equalsIgnoreCase(RELATIVE.getName())) return RELATIVE;
+        if (trimmed.regionMatches(true, 0, ScaleGradingPolicy.CUSTOM_PREFIX, 0, ScaleGradingPolicy.CUSTOM_PREFIX.length())) {
+            return ScaleGradingPolicy.parseCustom(trimmed);
+        }
+        throw new IllegalArgumentException("Unknown grading policy: " + spec);
+    }
+}
@@ -0,0 +1,481 @@
+package util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compressed set of epoch hours in the style of a roaring bitmap. Hours are split on their
+ * high 16 bits into containers (one covers about 7.5 years); a container holds its low 16 bits
+ * as a sorted array while sparse and as a 65536-bit bitmap once it passes 4096 values, so a
+ * term of class hours costs a few bytes each. Counting, rank and range counts, AND, OR and
+ * AND NOT work container by container without expanding the set. Not thread-safe.
+ */
+public class HourBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+    private static final byte ARRAY = 0;
+    private static final byte BITMAP = 1;
+
+    // Container keys (hour >> 16) ascending, with the container for each.
+    private int[] keys = new int[0];
+    private Container[] containers = new Container[0];
+    private int size;
+
+    public boolean add(int hour) {
+        int index = indexOf(hour >> 16);
+        if (index < 0) {
+            index = -index - 1;
+            insert(index, hour >> 16, new ArrayContainer());
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.add((char) hour);
+        return containers[index].cardinality() > before;
+    }
+
+    public boolean contains(int hour) {
+        int index = indexOf(hour >> 16);
+        return index >= 0 && containers[index].contains((char) hour);
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            count += containers[i].cardinality();
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Number of hours at or before the given one. */
+    public int rank(int hour) {
+        int key = hour >> 16;
+        int count = 0;
+        for (int i = 0; i < size && keys[i] <= key; i++) {
+            count += keys[i] < key ? containers[i].cardinality() : containers[i].rank((char) hour);
+        }
+        return count;
+    }
+
+    /** Number of hours from fromHour to toHour, both inclusive. */
+    public int rangeCardinality(int fromHour, int toHour) {
+        if (fromHour > toHour) return 0;
+        return rank(toHour) - (fromHour == Integer.MIN_VALUE ? 0 : rank(fromHour - 1));
+    }
+
+    /** The hours in ascending order. */
+    public int[] toArray() {
+        int[] hours = new int[cardinality()];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            count = containers[i].fill(hours, count, keys[i] << 16);
+        }
+        return hours;
+    }
+
+    /**
+     * The longest run of consecutive hours of sessions, taken in order, that are all in this
+     * set, e.g. with missed hours as this set and the hours a class was held as sessions, the
+     * most sessions missed in a row.
+     */
+    public int longestRunIn(HourBitmap sessions) {
+        int longest = 0;
+        int run = 0;
+        for (int hour : sessions.toArray()) {
+            run = contains(hour) ? run + 1 : 0;
+            longest = Math.max(longest, run);
+        }
+        return longest;
+    }
+
+    public HourBitmap and(HourBitmap other) {
+        HourBitmap result = new HourBitmap();
+        for (int i = 0, j = 0; i < size && j < other.size; ) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public HourBitmap andNot(HourBitmap other) {
+        HourBitmap result = new HourBitmap();
+        for (int i = 0, j = 0; i < size; ) {
+            if (j == other.size || keys[i] < other.keys[j]) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], containers[i].andNot(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public HourBitmap or(HourBitmap other) {
+        HourBitmap result = copy();
+        result.orInPlace(other);
+        return result;
+    }
+
+    /** Adds every hour of other to this set. */
+    public void orInPlace(HourBitmap other) {
+        for (int j = 0; j < other.size; j++) {
+            int index = indexOf(other.keys[j]);
+            if (index < 0) {
+                insert(-index - 1, other.keys[j], other.containers[j].copy());
+            } else {
+                containers[index] = containers[index].or(other.containers[j]);
+            }
+        }
+    }
+
+    public HourBitmap copy() {
+        HourBitmap copy = new HourBitmap();
+        copy.keys = Arrays.copyOf(keys, size);
+        copy.containers = new Container[size];
+        for (int i = 0; i < size; i++) {
+            copy.containers[i] = containers[i].copy();
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    /** Container count, then per container its key, kind, cardinality and values or bitmap words. */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(keys[i]);
+            containers[i].write(out);
+        }
+    }
+
+    public static HourBitmap readFrom(DataInput in) throws IOException {
+        HourBitmap bitmap = new HourBitmap();
+        int count = in.readInt();
+        if (count < 0) throw new IOException("Corrupt hour bitmap");
+        for (int i = 0; i < count; i++) {
+            int key = in.readInt();
+            byte kind = in.readByte();
+            int cardinality = in.readInt();
+            Container container;
+            if (kind == ARRAY && cardinality >= 0 && cardinality <= ARRAY_MAX) {
+                char[] values = new char[cardinality];
+                for (int v = 0; v < cardinality; v++) {
+                    values[v] = in.readChar();
+                }
+                container = new ArrayContainer(values, cardinality);
+            } else if (kind == BITMAP && cardinality > ARRAY_MAX) {
+                long[] words = new long[BITMAP_WORDS];
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    words[w] = in.readLong();
+                }
+                container = new BitmapContainer(words, cardinality);
+            } else {
+                throw new IOException("Corrupt hour bitmap");
+            }
+            bitmap.append(key, container);
+        }
+        return bitmap;
+    }
+
+    private int indexOf(int key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int index, int key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(4, size * 2));
+            containers = Arrays.copyOf(containers, keys.length);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    // Keys arrive in ascending order; empty results are left out.
+    private void append(int key, Container container) {
+        if (container.cardinality() > 0) insert(size, key, container);
+    }
+
+    private abstract static class Container {
+        abstract Container add(char low);
+        abstract boolean contains(char low);
+        abstract int cardinality();
+        abstract int rank(char low);
+        abstract int fill(int[] into, int offset, int high);
+        abstract Container and(Container other);
+        abstract Container andNot(Container other);
+        abstract Container or(Container other);
+        abstract Container copy();
+        abstract void write(DataOutput out) throws IOException;
+    }
+
+    private static class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index >= 0) return this;
+            if (cardinality == ARRAY_MAX) return toBitmap().add(low);
+            index = -index - 1;
+            if (cardinality == values.length) values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, cardinality * 2)));
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int rank(char low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+
+        @Override
+        int fill(int[] into, int offset, int high) {
+            for (int i = 0; i < cardinality; i++) {
+                into[offset++] = high | values[i];
+            }
+            return offset;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) result[count++] = values[i];
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) result[count++] = values[i];
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) return other.or(this);
+            ArrayContainer that = (ArrayContainer) other;
+            char[] merged = new char[cardinality + that.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < that.cardinality) {
+                char next;
+                if (j == that.cardinality || (i < cardinality && values[i] < that.values[j])) {
+                    next = values[i++];
+                } else if (i == cardinality || that.values[j] < values[i]) {
+                    next = that.values[j++];
+                } else {
+                    next = values[i++];
+                    j++;
+                }
+                merged[count++] = next;
+            }
+            ArrayContainer result = new ArrayContainer(merged, count);
+            return count > ARRAY_MAX ? result.toBitmap() : result;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+
+        @Override
+        void write(DataOutput out) throws IOException {
+            out.writeByte(ARRAY);
+            out.writeInt(cardinality);
+            for (int i = 0; i < cardinality; i++) {
+                out.writeChar(values[i]);
+            }
+        }
+
+        BitmapContainer toBitmap() {
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+    }
+
+    private static class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                words[low >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int rank(char low) {
+            int word = low >>> 6;
+            int count = 0;
+            for (int w = 0; w < word; w++) {
+                count += Long.bitCount(words[w]);
+            }
+            // Bits 0..low of the last word; the shift by 63 - (low % 64) drops the higher ones.
+            return count + Long.bitCount(words[word] << (63 - (low & 63)));
+        }
+
+        @Override
+        int fill(int[] into, int offset, int high) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    into[offset++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) return other.and(this);
+            long[] result = new long[BITMAP_WORDS];
+            long[] that = ((BitmapContainer) other).words;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] = words[w] & that[w];
+            }
+            return shrink(result);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer that = (ArrayContainer) other;
+                for (int i = 0; i < that.cardinality; i++) {
+                    result[that.values[i] >>> 6] &= ~(1L << that.values[i]);
+                }
+            } else {
+                long[] that = ((BitmapContainer) other).words;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    result[w] &= ~that[w];
+                }
+            }
+            return shrink(result);
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer that = (ArrayContainer) other;
+                for (int i = 0; i < that.cardinality; i++) {
+                    result[that.values[i] >>> 6] |= 1L << that.values[i];
+                }
+            } else {
+                long[] that = ((BitmapContainer) other).words;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    result[w] |= that[w];
+                }
+            }
+            return new BitmapContainer(result, count(result));
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        void write(DataOutput out) throws IOException {
+            out.writeByte(BITMAP);
+            out.writeInt(cardinality);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+
+        private static int count(long[] words) {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+
+        // Back to an array once sparse enough.
+        private static Container shrink(long[] words) {
+            int cardinality = count(words);
+            BitmapContainer bitmap = new BitmapContainer(words, cardinality);
+            if (cardinality > ARRAY_MAX) return bitmap;
+            char[] values = new char[cardinality];
+            int[] hours = new int[cardinality];
+            bitmap.fill(hours, 0, 0);
+            for (int i = 0; i < cardinality; i++) {
+                values[i] = (char) hours[i];
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+}
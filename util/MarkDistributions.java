@@ -0,0 +1,115 @@
+package util;
+
+import model.Assessment;
+import model.Mark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Score distributions per subject: one for each assessment column and one for the weighted
+ * scores, collected in a single pass over marks. Partial results for different shards or
+ * threads merge into one, so this is a plain Stream collector:
+ *
+ *   MarkDistributions distributions = MarkDistributions.collect(marks.stream());
+ *
+ * Bins and weights come from one GradingConfig for the whole collection, so partial results
+ * always have matching bins even if the configuration changes part way through.
+ */
+public class MarkDistributions {
+
+    private static final Assessment[] ASSESSMENTS = Assessment.values();
+
+    private final GradingConfig config;
+    private final LinkedHashMap<String, SubjectColumns> bySubject = new LinkedHashMap<>();
+
+    private static class SubjectColumns {
+        final String subjectCode;
+        final ScoreDistribution[] assessments = new ScoreDistribution[ASSESSMENTS.length];
+        final ScoreDistribution weightedScores = ScoreDistribution.forWeightedScores();
+
+        SubjectColumns(String subjectCode, GradingConfig config) {
+            this.subjectCode = subjectCode;
+            for (Assessment assessment : ASSESSMENTS) {
+                assessments[assessment.ordinal()] = ScoreDistribution.forMarks(config.getMaxMarks(assessment));
+            }
+        }
+
+        void merge(SubjectColumns other) {
+            for (int i = 0; i < assessments.length; i++) {
+                assessments[i].merge(other.assessments[i]);
+            }
+            weightedScores.merge(other.weightedScores);
+        }
+    }
+
+    public MarkDistributions() {
+        this(ConfigManager.getConfig());
+    }
+
+    public MarkDistributions(GradingConfig config) {
+        this.config = config;
+    }
+
+    public static MarkDistributions collect(Stream<Mark> marks) {
+        GradingConfig config = ConfigManager.getConfig();
+        return marks.collect(() -> new MarkDistributions(config), MarkDistributions::add, MarkDistributions::merge);
+    }
+
+    /** Streams every shard of the marks file once; nothing but the distributions stays in memory. */
+    public static MarkDistributions load(String marksPath) throws IOException {
+        try (Stream<Mark> marks = CSVManager.streamMarks(marksPath)) {
+            return collect(marks);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public void add(Mark mark) {
+        SubjectColumns columns = columnsFor(mark.getSubject());
+        for (Assessment assessment : ASSESSMENTS) {
+            columns.assessments[assessment.ordinal()].add(mark.getScore(assessment));
+        }
+        columns.weightedScores.add(WeightedScorer.score(mark, config));
+    }
+
+    public void merge(MarkDistributions other) {
+        for (SubjectColumns otherColumns : other.bySubject.values()) {
+            columnsFor(otherColumns.subjectCode).merge(otherColumns);
+        }
+    }
+
+    /** Subject codes in the order first seen, spelled as in the first row of each. */
+    public ArrayList<String> getSubjects() {
+        ArrayList<String> subjects = new ArrayList<>();
+        for (SubjectColumns columns : bySubject.values()) {
+            subjects.add(columns.subjectCode);
+        }
+        return subjects;
+    }
+
+    /** Null if no marks were seen for the subject. */
+    public ScoreDistribution get(String subjectCode, Assessment assessment) {
+        SubjectColumns columns = bySubject.get(MarksRepository.normalizeSubject(subjectCode));
+        return columns == null ? null : columns.assessments[assessment.ordinal()];
+    }
+
+    /** Null if no marks were seen for the subject. */
+    public ScoreDistribution getWeightedScores(String subjectCode) {
+        SubjectColumns columns = bySubject.get(MarksRepository.normalizeSubject(subjectCode));
+        return columns == null ? null : columns.weightedScores;
+    }
+
+    private SubjectColumns columnsFor(String subjectCode) {
+        String key = MarksRepository.normalizeSubject(subjectCode);
+        SubjectColumns columns = bySubject.get(key);
+        if (columns == null) {
+            columns = new SubjectColumns(subjectCode, config);
+            bySubject.put(key, columns);
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,359 @@
+package util;
+
+import model.Assessment;
+import model.Mark;
+
+import java.util.Arrays;
+
+/**
+ * Column-oriented marks: one int[] per assessment plus dictionary-encoded subject and
+ * username ids, instead of one Mark object per row. Whole-class aggregates run as
+ * primitive loops over these arrays; getRow() hands the GUI a Mark view of a single row.
+ *
+ * Subject codes and usernames are stored as written. Subject ids (getSubjectId() and the
+ * per-subject aggregates) refer to the normalized code, so "cy1121" and "CY1121" rows form
+ * one subject, as they do in MarksRepository. Each subject also indexes its rows by
+ * normalized username, so findRow() is a hash lookup rather than a scan of the class.
+ */
+public class MarkTable {
+
+    private static final int ASSESSMENT_COUNT = Assessment.values().length;
+
+    private final StringDictionary subjects = new StringDictionary();
+    private final StringDictionary usernames = new StringDictionary();
+    // Normalized subject codes, and the normalized id of each spelling in subjects.
+    private final StringDictionary subjectKeys = new StringDictionary();
+    private int[] subjectKeyOf = new int[16];
+    private int subjectKeyOfCount;
+    // Usernames trimmed and lower-cased, and the normalized id of each spelling in usernames.
+    private final StringDictionary usernameKeys = new StringDictionary();
+    private int[] usernameKeyOf = new int[16];
+    private int usernameKeyOfCount;
+
+    private int[] subjectIds = new int[1024];
+    private int[] usernameIds = new int[1024];
+    private final int[][] columns = new int[ASSESSMENT_COUNT][1024];
+    private int size;
+
+    // Row numbers of each normalized subject, so per-subject aggregates don't scan the whole table.
+    private int[][] subjectRows = new int[16][];
+    private int[] subjectRowCounts = new int[16];
+    // First row of each normalized username within each normalized subject.
+    private RowIndex[] subjectRowIndexes = new RowIndex[16];
+
+    public MarkTable() {
+    }
+
+    // Bulk constructor for MarksSnapshot: adopts the arrays and rebuilds the per-subject row lists.
+    MarkTable(StringDictionary subjects, StringDictionary usernames, int[] subjectIds, int[] usernameIds, int[][] columns, int size) {
+        for (int id = 0; id < subjects.size(); id++) {
+            addSubjectSpelling(subjects.valueOf(id));
+        }
+        for (int id = 0; id < usernames.size(); id++) {
+            addUsernameSpelling(usernames.valueOf(id));
+        }
+        this.subjectIds = subjectIds.length > 0 ? subjectIds : new int[16];
+        this.usernameIds = usernameIds.length > 0 ? usernameIds : new int[16];
+        for (int column = 0; column < ASSESSMENT_COUNT; column++) {
+            this.columns[column] = columns[column].length > 0 ? columns[column] : new int[16];
+        }
+        this.size = size;
+
+        this.subjectRows = new int[Math.max(16, subjectKeys.size())][];
+        this.subjectRowCounts = new int[subjectRows.length];
+        this.subjectRowIndexes = new RowIndex[subjectRows.length];
+        for (int row = 0; row < size; row++) {
+            addToSubjectRows(subjectKeyOf[subjectIds[row]], row);
+        }
+    }
+
+    public void add(Mark mark) {
+        int row = appendRow(mark.getSubject(), mark.getUsername());
+        for (Assessment assessment : Assessment.values()) {
+            columns[assessment.ordinal()][row] = mark.getScore(assessment);
+        }
+    }
+
+    public void add(String subjectCode, String username, int[] scores) {
+        int row = appendRow(subjectCode, username);
+        for (int column = 0; column < ASSESSMENT_COUNT; column++) {
+            columns[column][row] = scores[column];
+        }
+    }
+
+    private int appendRow(String subjectCode, String username) {
+        if (size == subjectIds.length) {
+            int capacity = size * 2;
+            subjectIds = Arrays.copyOf(subjectIds, capacity);
+            usernameIds = Arrays.copyOf(usernameIds, capacity);
+            for (int column = 0; column < ASSESSMENT_COUNT; column++) {
+                columns[column] = Arrays.copyOf(columns[column], capacity);
+            }
+        }
+        int spellingId = addSubjectSpelling(subjectCode);
+        int row = size++;
+        subjectIds[row] = spellingId;
+        usernameIds[row] = addUsernameSpelling(username);
+
+        addToSubjectRows(subjectKeyOf[spellingId], row);
+        return row;
+    }
+
+    private int addSubjectSpelling(String subjectCode) {
+        int spellingId = subjects.getOrAdd(subjectCode);
+        if (spellingId == subjectKeyOfCount) {
+            if (spellingId == subjectKeyOf.length) {
+                subjectKeyOf = Arrays.copyOf(subjectKeyOf, spellingId * 2);
+            }
+            subjectKeyOf[spellingId] = subjectKeys.getOrAdd(MarksRepository.normalizeSubject(subjectCode));
+            subjectKeyOfCount++;
+        }
+        return spellingId;
+    }
+
+    private int addUsernameSpelling(String username) {
+        int spellingId = usernames.getOrAdd(username);
+        if (spellingId == usernameKeyOfCount) {
+            if (spellingId == usernameKeyOf.length) {
+                usernameKeyOf = Arrays.copyOf(usernameKeyOf, spellingId * 2);
+            }
+            usernameKeyOf[spellingId] = usernameKeys.getOrAdd(normalizeUsername(username));
+            usernameKeyOfCount++;
+        }
+        return spellingId;
+    }
+
+    // Matches usernames the way MarksRepository.key() does.
+    private static String normalizeUsername(String username) {
+        return username.trim().toLowerCase();
+    }
+
+    private void addToSubjectRows(int subjectId, int row) {
+        if (subjectId >= subjectRows.length) {
+            subjectRows = Arrays.copyOf(subjectRows, Math.max(subjectId + 1, subjectRows.length * 2));
+            subjectRowCounts = Arrays.copyOf(subjectRowCounts, subjectRows.length);
+            subjectRowIndexes = Arrays.copyOf(subjectRowIndexes, subjectRows.length);
+        }
+        int[] rows = subjectRows[subjectId];
+        int count = subjectRowCounts[subjectId];
+        if (rows == null) {
+            rows = new int[16];
+        } else if (count == rows.length) {
+            rows = Arrays.copyOf(rows, count * 2);
+        }
+        rows[count] = row;
+        subjectRows[subjectId] = rows;
+        subjectRowCounts[subjectId] = count + 1;
+
+        if (subjectRowIndexes[subjectId] == null) subjectRowIndexes[subjectId] = new RowIndex();
+        subjectRowIndexes[subjectId].putIfAbsent(usernameKeyOf[usernameIds[row]], row);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getSubjectCount() {
+        return subjectKeys.size();
+    }
+
+    // Returns -1 when the subject has no rows.
+    public int getSubjectId(String subjectCode) {
+        return subjectKeys.idOf(MarksRepository.normalizeSubject(subjectCode));
+    }
+
+    // The normalized code; getSubject(row) gives a row's code as written.
+    public String getSubjectCode(int subjectId) {
+        return subjectKeys.valueOf(subjectId);
+    }
+
+    public String getSubject(int row) {
+        return subjects.valueOf(subjectIds[row]);
+    }
+
+    public String getUsername(int row) {
+        return usernames.valueOf(usernameIds[row]);
+    }
+
+    public int getScore(int row, Assessment assessment) {
+        return columns[assessment.ordinal()][row];
+    }
+
+    public void setScore(int row, Assessment assessment, int mark) {
+        columns[assessment.ordinal()][row] = mark;
+    }
+
+    // Returns -1 when the student has no row in the subject, else the first row, as MarksRepository.find() does.
+    public int findRow(String subjectCode, String username) {
+        int subjectId = getSubjectId(subjectCode);
+        if (subjectId < 0) return -1;
+        // A spelling already in the table skips normalizing the username.
+        int usernameId = usernames.idOf(username);
+        int usernameKey = usernameId >= 0 ? usernameKeyOf[usernameId] : usernameKeys.idOf(normalizeUsername(username));
+        return usernameKey >= 0 ? subjectRowIndexes[subjectId].get(usernameKey) : -1;
+    }
+
+    StringDictionary getSubjectDictionary() {
+        return subjects;
+    }
+
+    StringDictionary getUsernameDictionary() {
+        return usernames;
+    }
+
+    int getSubjectIdOfRow(int row) {
+        return subjectIds[row];
+    }
+
+    int getUsernameIdOfRow(int row) {
+        return usernameIds[row];
+    }
+
+    /** The live backing array for one assessment; only the first size() entries are rows. */
+    public int[] getColumn(Assessment assessment) {
+        return columns[assessment.ordinal()];
+    }
+
+    public int[] getRowsForSubject(int subjectId) {
+        if (subjectId < 0 || subjectId >= subjectKeys.size()) return new int[0];
+        return Arrays.copyOf(subjectRows[subjectId], subjectRowCounts[subjectId]);
+    }
+
+    public Mark getRow(int row) {
+        return new RowView(row);
+    }
+
+    /** Weighted 0-100 score of every row of the subject, in getRowsForSubject() order. */
+    public double[] weightedTotals(int subjectId) {
+        if (subjectId < 0 || subjectId >= subjectKeys.size()) return new double[0];
+        int[] rows = subjectRows[subjectId];
+        int count = subjectRowCounts[subjectId];
+        int[] q1 = columns[0], q2 = columns[1], q3 = columns[2], q4 = columns[3];
+        int[] a1 = columns[4], a2 = columns[5], a3 = columns[6], a4 = columns[7];
+        int[] mid = columns[8], fin = columns[9];
+
+        // Gathered into contiguous arrays first so the scoring loop itself has no indirection.
+        int[] quizTotals = new int[count];
+        int[] assignmentTotals = new int[count];
+        int[] mids = new int[count];
+        int[] finals = new int[count];
+        for (int i = 0; i < count; i++) {
+            int r = rows[i];
+            quizTotals[i] = q1[r] + q2[r] + q3[r] + q4[r];
+            assignmentTotals[i] = a1[r] + a2[r] + a3[r] + a4[r];
+            mids[i] = mid[r];
+            finals[i] = fin[r];
+        }
+        return WeightedScorer.scoreAll(quizTotals, assignmentTotals, mids, finals);
+    }
+
+    public double mean(Assessment assessment, int subjectId) {
+        if (subjectId < 0 || subjectId >= subjectKeys.size() || subjectRowCounts[subjectId] == 0) return 0.0;
+        int[] rows = subjectRows[subjectId];
+        int count = subjectRowCounts[subjectId];
+        int[] column = columns[assessment.ordinal()];
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += column[rows[i]];
+        }
+        return (double) sum / count;
+    }
+
+    /** Counts per raw mark 0..max; out-of-range marks are clamped into the first or last bin. */
+    public int[] histogram(Assessment assessment, int subjectId) {
+        int max = ConfigManager.getConfig().getMaxMarks(assessment);
+        int[] bins = new int[max + 1];
+        if (subjectId < 0 || subjectId >= subjectKeys.size()) return bins;
+        int[] rows = subjectRows[subjectId];
+        int count = subjectRowCounts[subjectId];
+        int[] column = columns[assessment.ordinal()];
+        for (int i = 0; i < count; i++) {
+            int value = column[rows[i]];
+            bins[value < 0 ? 0 : (value > max ? max : value)]++;
+        }
+        return bins;
+    }
+
+    /** Open-addressing map from normalized username id to row, one per subject. */
+    private static class RowIndex {
+        private int[] keys = new int[16];
+        private int[] rows = new int[16];
+        private int count;
+
+        RowIndex() {
+            Arrays.fill(keys, -1);
+        }
+
+        // Returns -1 when the username id has no row.
+        int get(int key) {
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; keys[slot] >= 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) return rows[slot];
+            }
+            return -1;
+        }
+
+        void putIfAbsent(int key, int row) {
+            if ((count + 1) * 2 > keys.length) grow();
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] >= 0) {
+                if (keys[slot] == key) return;
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            rows[slot] = row;
+            count++;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldRows = rows;
+            keys = new int[oldKeys.length * 2];
+            rows = new int[keys.length];
+            Arrays.fill(keys, -1);
+            count = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] >= 0) putIfAbsent(oldKeys[i], oldRows[i]);
+            }
+        }
+
+        // Ids are dense and sequential; spread them so neighbours don't cluster.
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /** A Mark backed by one table row; reads and writes go straight to the column arrays. */
+    private class RowView extends Mark {
+        private final int row;
+
+        RowView(int row) {
+            super(subjects.valueOf(subjectIds[row]), usernames.valueOf(usernameIds[row]));
+            this.row = row;
+        }
+
+        @Override public int getQuiz1() { return columns[0][row]; }
+        @Override public int getQuiz2() { return columns[1][row]; }
+        @Override public int getQuiz3() { return columns[2][row]; }
+        @Override public int getQuiz4() { return columns[3][row]; }
+        @Override public int getAssignment1() { return columns[4][row]; }
+        @Override public int getAssignment2() { return columns[5][row]; }
+        @Override public int getAssignment3() { return columns[6][row]; }
+        @Override public int getAssignment4() { return columns[7][row]; }
+        @Override public int getMid() { return columns[8][row]; }
+        @Override public int getFinalExam() { return columns[9][row]; }
+
+        @Override public void setQuiz1(int mark) { columns[0][row] = mark; }
+        @Override public void setQuiz2(int mark) { columns[1][row] = mark; }
+        @Override public void setQuiz3(int mark) { columns[2][row] = mark; }
+        @Override public void setQuiz4(int mark) { columns[3][row] = mark; }
+        @Override public void setAssignment1(int mark) { columns[4][row] = mark; }
+        @Override public void setAssignment2(int mark) { columns[5][row] = mark; }
+        @Override public void setAssignment3(int mark) { columns[6][row] = mark; }
+        @Override public void setAssignment4(int mark) { columns[7][row] = mark; }
+        @Override public void setMid(int mark) { columns[8][row] = mark; }
+        @Override public void setFinalExam(int mark) { columns[9][row] = mark; }
+    }
+}
@@ -0,0 +1,276 @@
+package util;
+
+import model.Assessment;
+import model.Mark;
+import model.MarkUpdate;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only journal of mark changes kept next to a marks CSV (data/marks.csv -> data/marks.journal).
+ * Records are replayed on top of the CSV at load time and folded back into it by a background
+ * compaction once the journal grows past a size or record threshold.
+ *
+ * Record formats, one per line:
+ *   U,subject,username,assessment,mark   set one assessment mark, creating the row if needed
+ *   E,subject,username                   enroll, i.e. create an empty row if none exists
+ * Both are idempotent, so replaying a journal over an already-compacted CSV is harmless.
+ */
+public class MarksJournal {
+
+    static final long COMPACT_THRESHOLD_BYTES = 256 * 1024;
+    static final int COMPACT_THRESHOLD_RECORDS = 2000;
+
+    // Every read-replay, append and compaction holds the CSV's DataFileLock, so a reader never sees a half-swapped CSV/journal pair.
+    private static final ConcurrentHashMap<String, Integer> pendingRecords = new ConcurrentHashMap<>();
+    private static final HashSet<String> scheduledCompactions = new HashSet<>();
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "marks-journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static File journalFileFor(String csvPath) {
+        String base = csvPath.endsWith(".csv") ? csvPath.substring(0, csvPath.length() - 4) : csvPath;
+        return new File(base + ".journal");
+    }
+
+    public static void appendUpdates(String csvPath, String subjectCode, String type, ArrayList<MarkUpdate> updates) throws IOException {
+        Assessment assessment = Assessment.fromKey(type);
+        ArrayList<String> records = new ArrayList<>();
+        for (MarkUpdate update : updates) {
+            if (assessment != null) {
+                records.add(String.join(",", "U", subjectCode, update.getUsername(), assessment.getKey(), String.valueOf(update.getMark())));
+            } else {
+                records.add(String.join(",", "E", subjectCode, update.getUsername()));
+            }
+        }
+        append(csvPath, records);
+    }
+
+    public static void appendEnrollments(String csvPath, String subjectCode, ArrayList<String> usernames) throws IOException {
+        ArrayList<String> records = new ArrayList<>();
+        for (String username : usernames) {
+            records.add(String.join(",", "E", subjectCode, username));
+        }
+        append(csvPath, records);
+    }
+
+    @SuppressWarnings("try")
+    private static void append(String csvPath, ArrayList<String> records) throws IOException {
+        if (records.isEmpty()) return;
+
+        StringBuilder batch = new StringBuilder();
+        for (String record : records) {
+            batch.append(record).append('\n');
+        }
+        byte[] bytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+
+        boolean compactionDue;
+        try (DataFileLock lock = DataFileLock.acquire(csvPath)) {
+            File journal = journalFileFor(csvPath);
+            int pending = pendingRecordCount(csvPath, journal);
+            try (FileOutputStream out = new FileOutputStream(journal, true)) {
+                out.write(bytes);
+                out.getFD().sync();
+            }
+            pending += records.size();
+            pendingRecords.put(csvPath, pending);
+            compactionDue = pending >= COMPACT_THRESHOLD_RECORDS || journal.length() >= COMPACT_THRESHOLD_BYTES;
+        }
+        DataCache.invalidate(csvPath);
+        if (compactionDue) {
+            scheduleCompaction(csvPath);
+        }
+    }
+
+    // Caller must hold the CSV's DataFileLock.
+    private static int pendingRecordCount(String csvPath, File journal) throws IOException {
+        Integer pending = pendingRecords.get(csvPath);
+        if (pending == null) {
+            pending = 0;
+            if (journal.exists()) {
+                for (byte b : Files.readAllBytes(journal.toPath())) {
+                    if (b == '\n') pending++;
+                }
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Applies every complete journal record to the repository. A trailing line without a newline
+     * belongs to an append still in progress and is left for the next load. Caller must hold the CSV's DataFileLock.
+     */
+    static void replay(String csvPath, MarksRepository repository) throws IOException {
+        for (String[] record : readRecords(csvPath)) {
+            apply(record, repository);
+        }
+    }
+
+    // Same as above for a columnar table. Caller must hold the CSV's DataFileLock.
+    static void replay(String csvPath, MarkTable table) throws IOException {
+        int[] emptyScores = new int[Assessment.values().length];
+        for (String[] record : readRecords(csvPath)) {
+            int row = table.findRow(record[1], record[2]);
+            if (row < 0) {
+                table.add(record[1], record[2], emptyScores);
+                row = table.size() - 1;
+            }
+            if ("U".equals(record[0])) {
+                Assessment assessment = Assessment.fromKey(record[3]);
+                if (assessment != null) {
+                    table.setScore(row, assessment, Integer.parseInt(record[4].trim()));
+                }
+            }
+        }
+    }
+
+    /** Complete, well-formed records grouped by MarksRepository key, in journal order. Caller must hold the CSV's DataFileLock. */
+    static LinkedHashMap<String, ArrayList<String[]>> readPendingByKey(String csvPath) throws IOException {
+        LinkedHashMap<String, ArrayList<String[]>> pending = new LinkedHashMap<>();
+        for (String[] record : readRecords(csvPath)) {
+            String key = MarksRepository.key(record[1], record[2]);
+            ArrayList<String[]> records = pending.get(key);
+            if (records == null) {
+                records = new ArrayList<>();
+                pending.put(key, records);
+            }
+            records.add(record);
+        }
+        return pending;
+    }
+
+    // Goes through the repository so its class statistics follow the change.
+    static void apply(String[] record, MarksRepository repository) {
+        Mark mark = repository.getOrCreate(record[1], record[2]);
+        if ("U".equals(record[0])) {
+            Assessment assessment = Assessment.fromKey(record[3]);
+            if (assessment != null) {
+                repository.setScore(mark, assessment, Integer.parseInt(record[4].trim()));
+            }
+        }
+    }
+
+    static void apply(String[] record, Mark mark) {
+        if ("U".equals(record[0])) {
+            Assessment assessment = Assessment.fromKey(record[3]);
+            if (assessment != null) {
+                mark.setScore(assessment, Integer.parseInt(record[4].trim()));
+            }
+        }
+    }
+
+    private static ArrayList<String[]> readRecords(String csvPath) throws IOException {
+        ArrayList<String[]> records = new ArrayList<>();
+        readRecords(csvPath, 0, records);
+        return records;
+    }
+
+    /**
+     * Applies the records appended since fromOffset and returns the offset to resume from next
+     * time, for callers that keep a repository current as the journal grows. Caller must hold the CSV's DataFileLock.
+     */
+    static long replay(String csvPath, MarksRepository repository, long fromOffset) throws IOException {
+        ArrayList<String[]> records = new ArrayList<>();
+        long endOffset = readRecords(csvPath, fromOffset, records);
+        for (String[] record : records) {
+            apply(record, repository);
+        }
+        return endOffset;
+    }
+
+    // Reads complete records from fromOffset on and returns the offset just past the last complete line.
+    private static long readRecords(String csvPath, long fromOffset, ArrayList<String[]> records) throws IOException {
+        File journal = journalFileFor(csvPath);
+        if (!journal.exists() || journal.length() <= fromOffset) return fromOffset;
+
+        byte[] bytes;
+        try (RandomAccessFile in = new RandomAccessFile(journal, "r")) {
+            bytes = new byte[(int) (in.length() - fromOffset)];
+            in.seek(fromOffset);
+            in.readFully(bytes);
+        }
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') end--;
+
+        int lines = 0;
+        String content = new String(bytes, 0, end, StandardCharsets.UTF_8);
+        for (String line : content.split("\n")) {
+            if (line.isEmpty()) continue;
+            lines++;
+            String[] parts = line.split(",");
+            try {
+                if ("U".equals(parts[0]) && parts.length >= 5) {
+                    Integer.parseInt(parts[4].trim());
+                    records.add(parts);
+                } else if ("E".equals(parts[0]) && parts.length >= 3) {
+                    records.add(parts);
+                } else {
+                    System.err.println("Skipping malformed journal record: " + line);
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Skipping malformed journal record: " + line);
+            }
+        }
+        if (fromOffset == 0) {
+            pendingRecords.put(csvPath, lines);
+        }
+        return fromOffset + end;
+    }
+
+    private static void scheduleCompaction(final String csvPath) {
+        synchronized (scheduledCompactions) {
+            if (!scheduledCompactions.add(csvPath)) return;
+        }
+        compactor.submit(() -> {
+            synchronized (scheduledCompactions) {
+                scheduledCompactions.remove(csvPath);
+            }
+            try {
+                compact(csvPath);
+            } catch (IOException e) {
+                System.err.println("Could not compact marks journal: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Folds the journal into a fresh CSV and truncates it. The new CSV is written to a temporary
+     * file and moved into place first, so a crash at any point leaves a replayable pair on disk.
+     */
+    @SuppressWarnings("try")
+    public static void compact(String csvPath) throws IOException {
+        try (DataFileLock lock = DataFileLock.acquire(csvPath)) {
+            File journal = journalFileFor(csvPath);
+            if (!journal.exists() || journal.length() == 0) return;
+
+            MarksRepository repository = CSVManager.loadMarksFile(csvPath);
+            CSVManager.replaceMarksFile(csvPath, repository.getAllMarks());
+            clear(csvPath);
+        }
+    }
+
+    // Truncates the journal. Caller must hold the CSV's DataFileLock.
+    static void clear(String csvPath) throws IOException {
+        File journal = journalFileFor(csvPath);
+        if (journal.exists()) {
+            try (FileOutputStream out = new FileOutputStream(journal, false)) {
+                out.getFD().sync();
+            }
+        }
+        pendingRecords.put(csvPath, 0);
+        DataCache.invalidate(csvPath);
+    }
+}
@@ -0,0 +1,182 @@
+package util;
+
+import model.Assessment;
+import model.Mark;
+import model.MarkUpdate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * In-memory marks store with a hash index on the normalized (subject, username) key.
+ * Rows keep their file order so saving writes them back exactly as they were loaded.
+ * Not thread-safe for writes; a repository that other threads read must no longer be changed
+ * (see copy()). The lazily built statistics and rank indexes are safe to request concurrently.
+ */
+public class MarksRepository {
+
+    private final ArrayList<Mark> marks = new ArrayList<>();
+    private final HashMap<String, Mark> index = new HashMap<>();
+    private final HashMap<String, ArrayList<Mark>> bySubject = new HashMap<>();
+    // Weighted-score statistics per subject, built on first request and then kept current by add() and setScore().
+    private final HashMap<String, ClassStatistics> statistics = new HashMap<>();
+    // Rank indexes per subject, maintained the same way.
+    private final HashMap<String, ScoreRankIndex> rankIndexes = new HashMap<>();
+    // The weighting both were built with; new weights or maximum marks make every weighted score different.
+    private GradingConfig scoringConfig;
+
+    public MarksRepository() {
+    }
+
+    public MarksRepository(ArrayList<Mark> loadedMarks) {
+        for (Mark mark : loadedMarks) {
+            add(mark);
+        }
+    }
+
+    // Subject codes are matched case-insensitively, usernames likewise, so "Ali" and "ali" are one student's row;
+    // enrollment rejects a username that differs only in case from an enrolled one. Neither can contain a comma in the CSV.
+    public static String key(String subjectCode, String username) {
+        return normalizeSubject(subjectCode) + "," + username.trim().toLowerCase();
+    }
+
+    public static String normalizeSubject(String subjectCode) {
+        return subjectCode.trim().toUpperCase();
+    }
+
+    // Duplicate rows are kept for saving, but lookups resolve to the first one, as the old linear scans did.
+    public void add(Mark mark) {
+        marks.add(mark);
+        index.putIfAbsent(key(mark.getSubject(), mark.getUsername()), mark);
+        String subject = normalizeSubject(mark.getSubject());
+        ArrayList<Mark> subjectMarks = bySubject.get(subject);
+        if (subjectMarks == null) {
+            subjectMarks = new ArrayList<>();
+            bySubject.put(subject, subjectMarks);
+        }
+        subjectMarks.add(mark);
+        dropIfScoringChanged();
+        ClassStatistics subjectStatistics = statistics.get(subject);
+        ScoreRankIndex rankIndex = rankIndexes.get(subject);
+        if (subjectStatistics != null || rankIndex != null) {
+            double score = WeightedScorer.score(mark);
+            if (subjectStatistics != null) subjectStatistics.add(score);
+            if (rankIndex != null) rankIndex.add(score);
+        }
+    }
+
+    /** Sets one mark and updates the subject's statistics and rank index by the change in the student's weighted score. */
+    public void setScore(Mark mark, Assessment assessment, int value) {
+        String subject = normalizeSubject(mark.getSubject());
+        dropIfScoringChanged();
+        ClassStatistics subjectStatistics = statistics.get(subject);
+        ScoreRankIndex rankIndex = rankIndexes.get(subject);
+        if (subjectStatistics == null && rankIndex == null) {
+            mark.setScore(assessment, value);
+            return;
+        }
+        double before = WeightedScorer.score(mark);
+        mark.setScore(assessment, value);
+        double after = WeightedScorer.score(mark);
+        if (subjectStatistics != null) subjectStatistics.replace(before, after);
+        if (rankIndex != null) rankIndex.replace(before, after);
+    }
+
+    /**
+     * Statistics over the weighted scores of every row of the subject. The first call scans the
+     * subject; later ones are O(1) unless a change removed the class minimum or maximum.
+     */
+    public synchronized ClassStatistics getStatistics(String subjectCode) {
+        String subject = normalizeSubject(subjectCode);
+        dropIfScoringChanged();
+        ClassStatistics subjectStatistics = statistics.get(subject);
+        if (subjectStatistics == null || !subjectStatistics.hasExactExtrema()) {
+            subjectStatistics = new ClassStatistics();
+            for (Mark mark : getMarksForSubject(subject)) {
+                subjectStatistics.add(WeightedScorer.score(mark));
+            }
+            statistics.put(subject, subjectStatistics);
+        }
+        return subjectStatistics;
+    }
+
+    /** Rank index over the weighted scores of every row of the subject, built by the first call. */
+    public synchronized ScoreRankIndex getRankIndex(String subjectCode) {
+        String subject = normalizeSubject(subjectCode);
+        dropIfScoringChanged();
+        ScoreRankIndex rankIndex = rankIndexes.get(subject);
+        if (rankIndex == null) {
+            rankIndex = new ScoreRankIndex();
+            for (Mark mark : getMarksForSubject(subject)) {
+                rankIndex.add(WeightedScorer.score(mark));
+            }
+            rankIndexes.put(subject, rankIndex);
+        }
+        return rankIndex;
+    }
+
+    private void dropIfScoringChanged() {
+        GradingConfig config = ConfigManager.getConfig();
+        if (config != scoringConfig) {
+            if (!config.hasSameScoring(scoringConfig)) {
+                statistics.clear();
+                rankIndexes.clear();
+            }
+            scoringConfig = config;
+        }
+    }
+
+    /** A repository with copies of every row, for changes that readers of this one must not see. */
+    public MarksRepository copy() {
+        MarksRepository copy = new MarksRepository();
+        for (Mark mark : marks) {
+            Mark markCopy = new Mark(mark.getSubject(), mark.getUsername());
+            for (Assessment assessment : Assessment.values()) {
+                markCopy.setScore(assessment, mark.getScore(assessment));
+            }
+            copy.add(markCopy);
+        }
+        return copy;
+    }
+
+    public Mark find(String subjectCode, String username) {
+        return index.get(key(subjectCode, username));
+    }
+
+    public boolean isEnrolled(String subjectCode, String username) {
+        return index.containsKey(key(subjectCode, username));
+    }
+
+    public Mark getOrCreate(String subjectCode, String username) {
+        Mark mark = find(subjectCode, username);
+        if (mark == null) {
+            mark = new Mark(subjectCode, username);
+            add(mark);
+        }
+        return mark;
+    }
+
+    public void applyUpdates(String subjectCode, String type, ArrayList<MarkUpdate> updates) {
+        Assessment assessment = Assessment.fromKey(type);
+        for (MarkUpdate update : updates) {
+            Mark studentMark = getOrCreate(subjectCode, update.getUsername());
+            if (assessment != null) {
+                setScore(studentMark, assessment, update.getMark());
+            }
+        }
+    }
+
+    // Returns the live list for the subject; callers must not modify it.
+    public ArrayList<Mark> getMarksForSubject(String subjectCode) {
+        ArrayList<Mark> subjectMarks = bySubject.get(normalizeSubject(subjectCode));
+        return subjectMarks != null ? subjectMarks : new ArrayList<Mark>();
+    }
+
+    public ArrayList<Mark> getAllMarks() {
+        return marks;
+    }
+
+    public int size() {
+        return marks.size();
+    }
+}
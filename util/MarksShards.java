@@ -0,0 +1,96 @@
+package util;
+
+import model.Mark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.TreeSet;
+
+/**
+ * Maps the marks path the rest of the code passes around (data/marks.csv) onto one marks
+ * CSV per subject (data/marks/CY1121.csv), each with its own journal and snapshot. Saving
+ * marks or enrolling students then only touches that subject's files.
+ *
+ * The first access migrates a monolithic marks.csv (plus its pending journal) into shards
+ * and renames it to marks.csv.migrated.
+ */
+public class MarksShards {
+
+    public static File shardDirectoryFor(String marksPath) {
+        String base = marksPath.endsWith(".csv") ? marksPath.substring(0, marksPath.length() - 4) : marksPath;
+        return new File(base);
+    }
+
+    // Subject codes are upper-cased like everywhere else; anything that is not safe in a file name becomes '_'.
+    public static String shardPathFor(String marksPath, String subjectCode) {
+        String name = MarksRepository.normalizeSubject(subjectCode).replaceAll("[^A-Z0-9_-]", "_");
+        return new File(shardDirectoryFor(marksPath), name + ".csv").getPath();
+    }
+
+    /** Every shard CSV of marksPath in file-name order, migrating the monolithic file first if needed. */
+    public static ArrayList<String> shardPaths(String marksPath) throws IOException {
+        migrateIfNeeded(marksPath);
+        // A subject whose students were enrolled but never compacted has only a journal so far.
+        File directory = shardDirectoryFor(marksPath);
+        String[] names = directory.list((dir, name) -> name.endsWith(".csv") || name.endsWith(".journal"));
+        TreeSet<String> paths = new TreeSet<>();
+        if (names != null) {
+            for (String name : names) {
+                String base = name.substring(0, name.lastIndexOf('.'));
+                paths.add(new File(directory, base + ".csv").getPath());
+            }
+        }
+        return new ArrayList<>(paths);
+    }
+
+    @SuppressWarnings("try")
+    public static void migrateIfNeeded(String marksPath) throws IOException {
+        File directory = shardDirectoryFor(marksPath);
+        File monolithic = new File(marksPath);
+        if (directory.isDirectory() && !monolithic.exists()) return;
+
+        // Locked on the monolithic file, so a second instance starting at the same time waits and then finds nothing to do.
+        try (DataFileLock lock = DataFileLock.acquire(marksPath)) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create marks directory " + directory);
+            }
+            if (!monolithic.exists()) return;
+
+            LinkedHashMap<String, ArrayList<Mark>> bySubject = new LinkedHashMap<>();
+            for (Mark mark : CSVManager.loadMarksFile(marksPath).getAllMarks()) {
+                String subject = MarksRepository.normalizeSubject(mark.getSubject());
+                ArrayList<Mark> marks = bySubject.get(subject);
+                if (marks == null) {
+                    marks = new ArrayList<>();
+                    bySubject.put(subject, marks);
+                }
+                marks.add(mark);
+            }
+            for (String subject : bySubject.keySet()) {
+                String shardPath = shardPathFor(marksPath, subject);
+                // Loaded under the shard's lock, so nothing appended to its journal is lost when it is cleared below.
+                try (DataFileLock shardLock = DataFileLock.acquire(shardPath)) {
+                    // A shard left by an interrupted migration keeps its rows; only students it lacks are added.
+                    MarksRepository shard = CSVManager.loadMarksFile(shardPath);
+                    for (Mark mark : bySubject.get(subject)) {
+                        if (!shard.isEnrolled(mark.getSubject(), mark.getUsername())) {
+                            shard.add(mark);
+                        }
+                    }
+                    CSVManager.replaceMarksFile(shardPath, shard.getAllMarks());
+                    MarksJournal.clear(shardPath);
+                }
+            }
+
+            Files.move(monolithic.toPath(), new File(marksPath + ".migrated").toPath(), StandardCopyOption.REPLACE_EXISTING);
+            MarksJournal.clear(marksPath);
+            Files.deleteIfExists(MarksJournal.journalFileFor(marksPath).toPath());
+            Files.deleteIfExists(MarksSnapshot.snapshotFileFor(marksPath).toPath());
+            System.out.println("Migrated " + marksPath + " into " + bySubject.size() + " subject shard(s) under " + directory);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package util;
+
+import model.Assessment;
+import model.Mark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * Binary image of a marks CSV (data/marks.csv -> data/marks.bin), loaded with a single bulk
+ * read instead of parsing text. The CSV stays the source of truth for import and export;
+ * a snapshot is only used while the CSV still has the length and CRC32 it was taken from.
+ * Checksumming the CSV is a plain sequential read, far cheaper than parsing it, and unlike
+ * the modification time it catches a same-length edit saved within the same second.
+ *
+ * Layout, big-endian:
+ *   int magic, int version, long csvLength, long csvCrc32, int rowCount
+ *   subject dictionary, username dictionary: int count, then count x (int byteLength, UTF-8 bytes)
+ *   int[rowCount] subject ids, int[rowCount] username ids
+ *   int[rowCount] per assessment, in Assessment order
+ *   long CRC32 of everything before it
+ */
+public class MarksSnapshot {
+
+    private static final int MAGIC = 0x554D4B53; // "UMKS"
+    // Version 3 stamps the CSV's checksum instead of its modification time; older snapshots are rebuilt.
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4;
+
+    public static File snapshotFileFor(String csvPath) {
+        String base = csvPath.endsWith(".csv") ? csvPath.substring(0, csvPath.length() - 4) : csvPath;
+        return new File(base + ".bin");
+    }
+
+    /** Returns the snapshot of csvPath, or null if there is none or it no longer matches the CSV. */
+    public static MarkTable loadIfFresh(String csvPath) {
+        File csv = new File(csvPath);
+        File snapshot = snapshotFileFor(csvPath);
+        if (!csv.exists() || !snapshot.exists()) return null;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshot.toPath()));
+            if (buffer.remaining() < HEADER_BYTES + 8) return null;
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return null;
+            if (buffer.getLong() != csv.length() || buffer.getLong() != checksumOf(csv)) return null;
+            buffer.position(0);
+            return read(buffer);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable marks snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Reads a snapshot regardless of whether its CSV has changed since, e.g. to export it. */
+    public static MarkTable read(File snapshot) throws IOException {
+        return read(ByteBuffer.wrap(Files.readAllBytes(snapshot.toPath())));
+    }
+
+    private static MarkTable read(ByteBuffer buffer) throws IOException {
+        byte[] bytes = buffer.array();
+        if (bytes.length < HEADER_BYTES + 8) throw new IOException("Marks snapshot is truncated");
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        buffer.position(bytes.length - 8);
+        if (buffer.getLong() != crc.getValue()) throw new IOException("Marks snapshot checksum mismatch");
+
+        buffer.position(0);
+        if (buffer.getInt() != MAGIC) throw new IOException("Not a marks snapshot");
+        int version = buffer.getInt();
+        if (version != VERSION) throw new IOException("Unsupported marks snapshot version " + version);
+        buffer.getLong();
+        buffer.getLong();
+        int rowCount = buffer.getInt();
+
+        StringDictionary subjects = readDictionary(buffer);
+        StringDictionary usernames = readDictionary(buffer);
+        int[] subjectIds = readInts(buffer, rowCount);
+        int[] usernameIds = readInts(buffer, rowCount);
+        int[][] columns = new int[Assessment.values().length][];
+        for (int column = 0; column < columns.length; column++) {
+            columns[column] = readInts(buffer, rowCount);
+        }
+        for (int row = 0; row < rowCount; row++) {
+            if (subjectIds[row] < 0 || subjectIds[row] >= subjects.size() || usernameIds[row] < 0 || usernameIds[row] >= usernames.size()) {
+                throw new IOException("Marks snapshot has an invalid dictionary id at row " + row);
+            }
+        }
+        return new MarkTable(subjects, usernames, subjectIds, usernameIds, columns, rowCount);
+    }
+
+    private static StringDictionary readDictionary(ByteBuffer buffer) {
+        StringDictionary dictionary = new StringDictionary();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            byte[] value = new byte[buffer.getInt()];
+            buffer.get(value);
+            dictionary.getOrAdd(new String(value, StandardCharsets.UTF_8));
+        }
+        return dictionary;
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        return values;
+    }
+
+    /**
+     * Writes the table as the snapshot of csvPath, stamped with the CSV's current length and
+     * checksum. The file is written beside the target and moved into place.
+     */
+    public static void write(String csvPath, MarkTable table) throws IOException {
+        File csv = new File(csvPath);
+        write(snapshotFileFor(csvPath), table, csv.length(), checksumOf(csv));
+    }
+
+    /** CRC32 of the file's bytes. */
+    public static long checksumOf(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(chunk)) > 0) {
+                crc.update(chunk, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    public static void write(File snapshot, MarkTable table, long csvLength, long csvChecksum) throws IOException {
+        int rowCount = table.size();
+        byte[][] subjects = encode(table.getSubjectDictionary());
+        byte[][] usernames = encode(table.getUsernameDictionary());
+
+        long size = HEADER_BYTES + dictionaryBytes(subjects) + dictionaryBytes(usernames)
+                + 4L * rowCount * (2 + Assessment.values().length) + 8;
+        if (size > Integer.MAX_VALUE) throw new IOException("Marks table too large for a snapshot");
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(csvLength).putLong(csvChecksum).putInt(rowCount);
+        writeDictionary(buffer, subjects);
+        writeDictionary(buffer, usernames);
+        for (int row = 0; row < rowCount; row++) buffer.putInt(table.getSubjectIdOfRow(row));
+        for (int row = 0; row < rowCount; row++) buffer.putInt(table.getUsernameIdOfRow(row));
+        for (Assessment assessment : Assessment.values()) {
+            buffer.asIntBuffer().put(table.getColumn(assessment), 0, rowCount);
+            buffer.position(buffer.position() + rowCount * 4);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+
+        // Readers holding only a shared lock may refresh the same snapshot at once, so each writes its own temp file.
+        File directory = snapshot.getAbsoluteFile().getParentFile();
+        File temp = Files.createTempFile(directory.toPath(), snapshot.getName(), ".tmp").toFile();
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(buffer.array());
+                out.getFD().sync();
+            }
+            try {
+                Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    // Converters between the two formats; the snapshot written from a CSV is stamped as fresh for it.
+    public static void fromCsv(String csvPath) throws IOException {
+        write(csvPath, CSVManager.readMarksCsv(csvPath));
+    }
+
+    public static void toCsv(File snapshot, String csvPath) throws IOException {
+        MarkTable table = read(snapshot);
+        ArrayList<Mark> marks = new ArrayList<>();
+        for (int row = 0; row < table.size(); row++) {
+            marks.add(table.getRow(row));
+        }
+        CSVManager.writeMarksCsv(new File(csvPath), marks);
+    }
+
+    private static byte[][] encode(StringDictionary dictionary) {
+        byte[][] encoded = new byte[dictionary.size()][];
+        for (int id = 0; id < encoded.length; id++) {
+            encoded[id] = dictionary.valueOf(id).getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+
+    private static long dictionaryBytes(byte[][] values) {
+        long bytes = 4;
+        for (byte[] value : values) {
+            bytes += 4 + value.length;
+        }
+        return bytes;
+    }
+
+    private static void writeDictionary(ByteBuffer buffer, byte[][] values) {
+        buffer.putInt(values.length);
+        for (byte[] value : values) {
+            buffer.putInt(value.length).put(value);
+        }
+    }
+}
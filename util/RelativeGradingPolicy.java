@@ -0,0 +1,46 @@
+package util;
+
+/**
+ * Grades on the curve: each cutoff is the class mean plus a multiple of its standard deviation.
+ * Classes with fewer than two scores have no meaningful curve and use the absolute scale.
+ */
+public class RelativeGradingPolicy implements GradingPolicy {
+
+    private static final double[] DEVIATIONS = {-1.6, -1.2, -0.8, -0.4, 0.0, 0.3, 0.6, 0.9, 1.2, 1.5};
+    private static final String[] GRADES = {"D", "D+", "C-", "C", "C+", "B-", "B", "B+", "A-", "A"};
+
+    RelativeGradingPolicy() {
+    }
+
+    /** The curve for a class with this mean and (population) standard deviation. */
+    public static GradeScale scale(double mean, double stdDev) {
+        double[] cutoffs = new double[DEVIATIONS.length];
+        for (int i = 0; i < cutoffs.length; i++) {
+            cutoffs[i] = mean + DEVIATIONS[i] * stdDev;
+        }
+        return new GradeScale(cutoffs, GRADES, "F");
+    }
+
+    @Override
+    public String getName() {
+        return "relative";
+    }
+
+    @Override
+    public String getLabel() {
+        return "Relative";
+    }
+
+    @Override
+    public boolean usesClassStatistics() {
+        return true;
+    }
+
+    @Override
+    public GradeScale scaleFor(ClassStatistics classStatistics) {
+        if (classStatistics == null || classStatistics.getCount() < 2) {
+            return GradingPolicy.ABSOLUTE.scaleFor(null);
+        }
+        return scale(classStatistics.getMean(), classStatistics.getStdDev());
+    }
+}
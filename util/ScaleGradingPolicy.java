@@ -0,0 +1,82 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * A fixed scale of minimum scores, independent of how the class did: the standard absolute
+ * scale or a custom one such as "custom:A=90,B+=85,B=80,C=70,D=60". Scores below every
+ * minimum get an F.
+ */
+public class ScaleGradingPolicy implements GradingPolicy {
+
+    static final String CUSTOM_PREFIX = "custom:";
+
+    private final String name;
+    private final String label;
+    private final GradeScale scale;
+
+    ScaleGradingPolicy(String name, String label, double[] cutoffs, String[] grades) {
+        this.name = name;
+        this.label = label;
+        this.scale = new GradeScale(cutoffs, grades, "F");
+    }
+
+    static ScaleGradingPolicy parseCustom(String spec) {
+        String[] entries = spec.substring(CUSTOM_PREFIX.length()).split(",");
+        Integer[] order = new Integer[entries.length];
+        final double[] minimums = new double[entries.length];
+        String[] names = new String[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            int equals = entries[i].indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected GRADE=MINIMUM in custom scale, found: " + entries[i].trim());
+            }
+            names[i] = entries[i].substring(0, equals).trim();
+            try {
+                minimums[i] = Double.parseDouble(entries[i].substring(equals + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid minimum score in custom scale: " + entries[i].trim());
+            }
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(minimums[a], minimums[b]));
+
+        double[] cutoffs = new double[entries.length];
+        String[] grades = new String[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            cutoffs[i] = minimums[order[i]];
+            grades[i] = names[order[i]];
+        }
+        // Saved highest grade first, the way people write scales.
+        StringBuilder canonical = new StringBuilder(CUSTOM_PREFIX);
+        for (int i = entries.length - 1; i >= 0; i--) {
+            canonical.append(grades[i]).append('=').append(formatMinimum(cutoffs[i]));
+            if (i > 0) canonical.append(',');
+        }
+        return new ScaleGradingPolicy(canonical.toString(), "Custom", cutoffs, grades);
+    }
+
+    private static String formatMinimum(double minimum) {
+        return minimum == Math.rint(minimum) ? String.valueOf((long) minimum) : String.valueOf(minimum);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public boolean usesClassStatistics() {
+        return false;
+    }
+
+    @Override
+    public GradeScale scaleFor(ClassStatistics classStatistics) {
+        return scale;
+    }
+}
@@ -0,0 +1,120 @@
+package util;
+
+/**
+ * Distribution of one column of scores, e.g. a subject's Mid marks or its weighted scores,
+ * built in one pass. Values are counted in fixed bins (one per mark for raw marks, 0.01 wide
+ * for weighted scores), which makes the histogram its own quantile sketch: quantiles are exact
+ * to the bin width, and two distributions of the same column merge by adding counts, so
+ * shards or threads can each build one and combine them.
+ */
+public class ScoreDistribution {
+
+    private final double maxValue;
+    private final double binWidth;
+    private final long[] bins;
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private long zeroCount;
+
+    /** Values outside 0..maxValue are counted in the first or last bin, but min, max and mean see them as they are. */
+    public ScoreDistribution(double maxValue, double binWidth) {
+        this.maxValue = maxValue;
+        this.binWidth = binWidth;
+        this.bins = new long[(int) Math.round(maxValue / binWidth) + 1];
+    }
+
+    public static ScoreDistribution forMarks(int maxMarks) {
+        return new ScoreDistribution(maxMarks, 1);
+    }
+
+    public static ScoreDistribution forWeightedScores() {
+        return new ScoreDistribution(100, 0.01);
+    }
+
+    public void add(double value) {
+        long bin = Math.round(value / binWidth);
+        bins[bin < 0 ? 0 : (bin >= bins.length ? bins.length - 1 : (int) bin)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (value == 0) zeroCount++;
+    }
+
+    public void merge(ScoreDistribution other) {
+        if (other.bins.length != bins.length || other.binWidth != binWidth) {
+            throw new IllegalArgumentException("Cannot merge distributions with different bins");
+        }
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] += other.bins[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        zeroCount += other.zeroCount;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0.0 : sum / count;
+    }
+
+    public double getMin() {
+        return count == 0 ? 0.0 : min;
+    }
+
+    public double getMax() {
+        return count == 0 ? 0.0 : max;
+    }
+
+    public long getZeroCount() {
+        return zeroCount;
+    }
+
+    public double getMaxValue() {
+        return maxValue;
+    }
+
+    /** Nearest-rank quantile for q in 0..1, to the bin width; 0 when empty. */
+    public double quantile(double q) {
+        if (count == 0) return 0.0;
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int i = 0; i < bins.length; i++) {
+            seen += bins[i];
+            if (seen >= rank) return i * binWidth;
+        }
+        return maxValue;
+    }
+
+    public double getMedian() {
+        return quantile(0.5);
+    }
+
+    /** Share of values, 0-1, at or above the threshold, to the bin width. */
+    public double passRate(double threshold) {
+        if (count == 0) return 0.0;
+        long passed = 0;
+        for (int i = bins.length - 1; i >= 0 && i * binWidth >= threshold; i--) {
+            passed += bins[i];
+        }
+        return (double) passed / count;
+    }
+
+    /** Counts in equal-width buckets over 0..maxValue, for drawing; the last bucket includes maxValue. */
+    public long[] histogram(int buckets) {
+        long[] counts = new long[buckets];
+        for (int i = 0; i < bins.length; i++) {
+            if (bins[i] == 0) continue;
+            int bucket = (int) (i * binWidth * buckets / maxValue);
+            counts[bucket >= buckets ? buckets - 1 : bucket] += bins[i];
+        }
+        return counts;
+    }
+}
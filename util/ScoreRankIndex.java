@@ -0,0 +1,97 @@
+package util;
+
+/**
+ * Order-statistic index over a class's weighted scores: a Fenwick tree counting students per
+ * 0.01 of score from 0 to 100, so rank, percentile and the top-k cutoff are O(log n) and a
+ * changed score is two O(log n) updates. Scores are compared as they are displayed, rounded
+ * to two decimals; anything outside 0-100 counts as the nearest end.
+ */
+public class ScoreRankIndex {
+
+    private static final int BUCKETS = 10001;
+
+    // 1-based Fenwick tree: tree[i] counts the buckets (i - lowbit(i), i].
+    private final int[] tree = new int[BUCKETS + 1];
+    private int count;
+
+    public void add(double score) {
+        update(bucketOf(score), 1);
+        count++;
+    }
+
+    public void remove(double score) {
+        update(bucketOf(score), -1);
+        count--;
+    }
+
+    public void replace(double before, double after) {
+        int from = bucketOf(before);
+        int to = bucketOf(after);
+        if (from != to) {
+            update(from, -1);
+            update(to, 1);
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /** 1 for the top score; students with the same (rounded) score share a rank. */
+    public int rank(double score) {
+        return countAbove(score) + 1;
+    }
+
+    public int countAbove(double score) {
+        return count - countAtOrBelow(score);
+    }
+
+    public int countAtOrBelow(double score) {
+        return prefix(bucketOf(score));
+    }
+
+    /** Share of the class, 0-100, that scored at most this much. */
+    public double percentile(double score) {
+        return count == 0 ? 0.0 : 100.0 * countAtOrBelow(score) / count;
+    }
+
+    /**
+     * The k-th highest score (rounded to two decimals), i.e. the lowest score that still makes
+     * the top k; NaN when the class has fewer than k students.
+     */
+    public double kthHighest(int k) {
+        if (k < 1 || k > count) return Double.NaN;
+        // The k-th highest is the (count - k + 1)-th lowest: descend the tree for the first prefix reaching it.
+        int remaining = count - k + 1;
+        int position = 0;
+        for (int step = Integer.highestOneBit(BUCKETS); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= BUCKETS && tree[next] < remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        return position / 100.0;
+    }
+
+    private static int bucketOf(double score) {
+        if (!(score > 0)) return 0;
+        long bucket = Math.round(score * 100);
+        return bucket >= BUCKETS ? BUCKETS - 1 : (int) bucket;
+    }
+
+    private void update(int bucket, int delta) {
+        for (int i = bucket + 1; i <= BUCKETS; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    // Students in buckets 0..bucket.
+    private int prefix(int bucket) {
+        int sum = 0;
+        for (int i = bucket + 1; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,38 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Dictionary encoding for repeated strings: each distinct value gets a dense int id,
+ * so columns can store ids instead of String references.
+ */
+public class StringDictionary {
+
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private final ArrayList<String> values = new ArrayList<>();
+
+    public int getOrAdd(String value) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            ids.put(value, id);
+            values.add(value);
+        }
+        return id;
+    }
+
+    // Returns -1 when the value has never been added.
+    public int idOf(String value) {
+        Integer id = ids.get(value);
+        return id != null ? id : -1;
+    }
+
+    public String valueOf(int id) {
+        return values.get(id);
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,78 @@
+package util;
+
+import model.Assessment;
+import model.Mark;
+
+/**
+ * Course weighting: quizzes and assignments are each out of 40 in total, the mid out of 20
+ * and the final out of 40, scaled to a 0-100 weighted score. The constants are the defaults;
+ * weight.* and max.* lines in grading_policy.txt override them through ConfigManager.
+ */
+public class WeightedScorer {
+
+    public static final double QUIZ_WEIGHT = 0.20;
+    public static final double ASSIGNMENT_WEIGHT = 0.20;
+    public static final double MID_WEIGHT = 0.20;
+    public static final double FINAL_WEIGHT = 0.40;
+
+    public static final double QUIZ_TOTAL = 40.0;
+    public static final double ASSIGNMENT_TOTAL = 40.0;
+    public static final double MID_TOTAL = 20.0;
+    public static final double FINAL_TOTAL = 40.0;
+
+    public static double score(Mark mark) {
+        return score(mark, ConfigManager.getConfig());
+    }
+
+    /** The weighted score under the given configuration, for callers that must use one snapshot throughout. */
+    public static double score(Mark mark, GradingConfig config) {
+        if (mark == null) return 0.0;
+        return score(config, mark.getTotalQuizScore(), mark.getTotalAssignmentScore(), mark.getMid(), mark.getFinalExam());
+    }
+
+    public static double score(int quizTotal, int assignmentTotal, int mid, int finalExam) {
+        return score(ConfigManager.getConfig(), quizTotal, assignmentTotal, mid, finalExam);
+    }
+
+    // Every weighted score in the application goes through this one formula, so batch and per-student results agree exactly.
+    private static double score(GradingConfig config, int quizTotal, int assignmentTotal, int mid, int finalExam) {
+        double quizScore = ((double) quizTotal / config.getQuizTotal()) * config.getQuizWeight();
+        double assignmentScore = ((double) assignmentTotal / config.getAssignmentTotal()) * config.getAssignmentWeight();
+        double midScore = ((double) mid / config.getMaxMarks(Assessment.MID)) * config.getMidWeight();
+        double finalScore = ((double) finalExam / config.getMaxMarks(Assessment.FINAL)) * config.getFinalWeight();
+
+        return (quizScore + assignmentScore + midScore + finalScore) * 100;
+    }
+
+    /** Weighted scores of a whole class from per-student totals; the arrays run in parallel. */
+    public static double[] scoreAll(int[] quizTotals, int[] assignmentTotals, int[] mids, int[] finals) {
+        double[] scores = new double[quizTotals.length];
+        scoreAll(quizTotals, assignmentTotals, mids, finals, scores, quizTotals.length);
+        return scores;
+    }
+
+    /**
+     * Writes the first count weighted scores into scores. A plain primitive loop over the
+     * columns, standing in for a Vector API path, which Java 8 does not have; whether C2
+     * vectorizes it is up to the JVM.
+     */
+    public static void scoreAll(int[] quizTotals, int[] assignmentTotals, int[] mids, int[] finals, double[] scores, int count) {
+        if (quizTotals.length < count || assignmentTotals.length < count || mids.length < count
+                || finals.length < count || scores.length < count) {
+            throw new IllegalArgumentException("Every array needs at least " + count + " entries");
+        }
+        // One snapshot for the whole batch, held in locals so the loop stays free of calls.
+        GradingConfig config = ConfigManager.getConfig();
+        double quizMax = config.getQuizTotal(), quizWeight = config.getQuizWeight();
+        double assignmentMax = config.getAssignmentTotal(), assignmentWeight = config.getAssignmentWeight();
+        double midMax = config.getMaxMarks(Assessment.MID), midWeight = config.getMidWeight();
+        double finalMax = config.getMaxMarks(Assessment.FINAL), finalWeight = config.getFinalWeight();
+        for (int i = 0; i < count; i++) {
+            double quizScore = ((double) quizTotals[i] / quizMax) * quizWeight;
+            double assignmentScore = ((double) assignmentTotals[i] / assignmentMax) * assignmentWeight;
+            double midScore = ((double) mids[i] / midMax) * midWeight;
+            double finalScore = ((double) finals[i] / finalMax) * finalWeight;
+            scores[i] = (quizScore + assignmentScore + midScore + finalScore) * 100;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package util;
+
+import model.Assessment;
+import model.Mark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Answers "what do I need on the assessments still to come" for any set of pending
+ * assessments. The weighted score is linear in the marks, so the feasible region is every
+ * combination of pending marks whose weighted gain covers the gap to the target; it is
+ * described by the maximum achievable score, the least mark on each pending assessment when
+ * the others go perfectly, and the least uniform percentage across all of them.
+ *
+ * Every candidate is checked with WeightedScorer itself, so a reported minimum is exactly
+ * what grading will count. Results are memoized by student, subject, current marks, pending
+ * set and target, so asking again is a map lookup and a changed mark is never served stale;
+ * a configuration change empties the memo.
+ */
+public class WhatIfSolver {
+
+    private static final int CACHE_SIZE = 4096;
+    private static final Assessment[] ASSESSMENTS = Assessment.values();
+
+    private GradingConfig memoConfig;
+    private final LinkedHashMap<String, Result> memo = new LinkedHashMap<String, Result>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    public static class Result {
+        private final String subject;
+        private final String username;
+        private final Set<Assessment> pending;
+        private final double targetScore;
+        private final double currentScore;
+        private final double maxScore;
+        private final EnumMap<Assessment, Integer> minimumMarks = new EnumMap<>(Assessment.class);
+        private final EnumMap<Assessment, Integer> uniformMarks = new EnumMap<>(Assessment.class);
+        private int uniformPercent = -1;
+
+        Result(Mark mark, Set<Assessment> pending, double targetScore, double currentScore, double maxScore) {
+            this.subject = mark.getSubject();
+            this.username = mark.getUsername();
+            this.pending = pending;
+            this.targetScore = targetScore;
+            this.currentScore = currentScore;
+            this.maxScore = maxScore;
+        }
+
+        public String getSubject() { return subject; }
+        public String getUsername() { return username; }
+        public Set<Assessment> getPending() { return pending; }
+        public double getTargetScore() { return targetScore; }
+
+        /** Weighted score with nothing more earned on the pending assessments. */
+        public double getCurrentScore() { return currentScore; }
+
+        /** Weighted score with full marks on every pending assessment. */
+        public double getMaxScore() { return maxScore; }
+
+        public boolean isFeasible() {
+            return maxScore >= targetScore;
+        }
+
+        /** The target is reached even with zero on everything pending. */
+        public boolean isSecured() {
+            return currentScore >= targetScore;
+        }
+
+        /** Least mark on the assessment with full marks on the other pending ones; empty when infeasible. */
+        public Map<Assessment, Integer> getMinimumMarks() { return minimumMarks; }
+
+        /** Least whole percentage that, scored on every pending assessment, reaches the target; -1 when infeasible. */
+        public int getUniformPercent() { return uniformPercent; }
+
+        /** The marks getUniformPercent() stands for, rounded up to whole marks. */
+        public Map<Assessment, Integer> getUniformMarks() { return uniformMarks; }
+    }
+
+    /** Assessments the student has no mark for yet. */
+    public static EnumSet<Assessment> pendingAssessments(Mark mark) {
+        EnumSet<Assessment> pending = EnumSet.noneOf(Assessment.class);
+        for (Assessment assessment : ASSESSMENTS) {
+            if (mark.getScore(assessment) == 0) pending.add(assessment);
+        }
+        return pending;
+    }
+
+    /** Assessments nobody in the class has a mark for yet, i.e. not held or not graded. */
+    public static EnumSet<Assessment> pendingForClass(Collection<Mark> marks) {
+        EnumSet<Assessment> pending = EnumSet.allOf(Assessment.class);
+        for (Mark mark : marks) {
+            for (Assessment assessment : ASSESSMENTS) {
+                if (mark.getScore(assessment) != 0) pending.remove(assessment);
+            }
+            if (pending.isEmpty()) break;
+        }
+        return pending;
+    }
+
+    /**
+     * The weighted score a target stands for: a percentage such as "75" or "75%", or a grade
+     * such as "B+" looked up in the scale.
+     */
+    public static double parseTarget(String target, GradeScale scale) {
+        String trimmed = target == null ? "" : target.trim();
+        if (trimmed.endsWith("%")) trimmed = trimmed.substring(0, trimmed.length() - 1).trim();
+        if (trimmed.isEmpty()) throw new IllegalArgumentException("Enter a grade such as B+ or a percentage such as 75.");
+        try {
+            double percentage = Double.parseDouble(trimmed);
+            if (percentage < 0 || percentage > 100 || Double.isNaN(percentage)) {
+                throw new IllegalArgumentException("Desired grade must be between 0 and 100.");
+            }
+            return percentage;
+        } catch (NumberFormatException e) {
+            double minimum = scale.minimumFor(trimmed);
+            if (Double.isNaN(minimum)) throw new IllegalArgumentException("Unknown grade: " + trimmed);
+            return minimum;
+        }
+    }
+
+    public synchronized Result solve(Mark mark, Set<Assessment> pending, double targetScore) {
+        GradingConfig config = ConfigManager.getConfig();
+        if (config != memoConfig) {
+            memo.clear();
+            memoConfig = config;
+        }
+        String key = memoKey(mark, pending, targetScore);
+        Result result = memo.get(key);
+        if (result == null) {
+            result = compute(mark, pending, targetScore, config);
+            memo.put(key, result);
+        }
+        return result;
+    }
+
+    /** One result per student, e.g. with the lowest passing score as target to list who can still pass. */
+    public ArrayList<Result> solveClass(Collection<Mark> marks, Set<Assessment> pending, double targetScore) {
+        ArrayList<Result> results = new ArrayList<>();
+        for (Mark mark : marks) {
+            results.add(solve(mark, pending, targetScore));
+        }
+        return results;
+    }
+
+    private static Result compute(Mark mark, Set<Assessment> pending, double targetScore, GradingConfig config) {
+        EnumSet<Assessment> pendingCopy = pending.isEmpty() ? EnumSet.noneOf(Assessment.class) : EnumSet.copyOf(pending);
+        int[] marks = new int[ASSESSMENTS.length];
+        for (Assessment assessment : ASSESSMENTS) {
+            marks[assessment.ordinal()] = pendingCopy.contains(assessment) ? 0 : mark.getScore(assessment);
+        }
+        double current = score(marks);
+        for (Assessment assessment : pendingCopy) {
+            marks[assessment.ordinal()] = config.getMaxMarks(assessment);
+        }
+        double max = score(marks);
+        Result result = new Result(mark, pendingCopy, targetScore, current, max);
+        if (!result.isFeasible()) return result;
+
+        for (Assessment assessment : pendingCopy) {
+            result.minimumMarks.put(assessment, leastMark(marks, assessment, config.getMaxMarks(assessment), targetScore));
+            marks[assessment.ordinal()] = config.getMaxMarks(assessment);
+        }
+
+        int low = 0;
+        int high = 100;
+        while (low < high) {
+            int percent = (low + high) >>> 1;
+            if (score(uniform(marks, pendingCopy, percent, config)) >= targetScore) {
+                high = percent;
+            } else {
+                low = percent + 1;
+            }
+        }
+        result.uniformPercent = low;
+        uniform(marks, pendingCopy, low, config);
+        for (Assessment assessment : pendingCopy) {
+            result.uniformMarks.put(assessment, marks[assessment.ordinal()]);
+        }
+        return result;
+    }
+
+    // Binary search over the one assessment's marks; the others stay as they are in marks.
+    private static int leastMark(int[] marks, Assessment assessment, int maxMarks, double targetScore) {
+        int low = 0;
+        int high = maxMarks;
+        while (low < high) {
+            int candidate = (low + high) >>> 1;
+            marks[assessment.ordinal()] = candidate;
+            if (score(marks) >= targetScore) {
+                high = candidate;
+            } else {
+                low = candidate + 1;
+            }
+        }
+        return low;
+    }
+
+    private static int[] uniform(int[] marks, Set<Assessment> pending, int percent, GradingConfig config) {
+        for (Assessment assessment : pending) {
+            marks[assessment.ordinal()] = (percent * config.getMaxMarks(assessment) + 99) / 100;
+        }
+        return marks;
+    }
+
+    private static double score(int[] marks) {
+        int quizTotal = marks[Assessment.QUIZ1.ordinal()] + marks[Assessment.QUIZ2.ordinal()]
+                + marks[Assessment.QUIZ3.ordinal()] + marks[Assessment.QUIZ4.ordinal()];
+        int assignmentTotal = marks[Assessment.ASSIGNMENT1.ordinal()] + marks[Assessment.ASSIGNMENT2.ordinal()]
+                + marks[Assessment.ASSIGNMENT3.ordinal()] + marks[Assessment.ASSIGNMENT4.ordinal()];
+        return WeightedScorer.score(quizTotal, assignmentTotal, marks[Assessment.MID.ordinal()], marks[Assessment.FINAL.ordinal()]);
+    }
+
+    private static String memoKey(Mark mark, Set<Assessment> pending, double targetScore) {
+        StringBuilder key = new StringBuilder(MarksRepository.key(mark.getSubject(), mark.getUsername()));
+        for (Assessment assessment : ASSESSMENTS) {
+            key.append(',').append(pending.contains(assessment) ? "?" : String.valueOf(mark.getScore(assessment)));
+        }
+        return key.append(',').append(Double.doubleToLongBits(targetScore)).toString();
+    }
+}